@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link Database#executeBatch} inserting rows into an in-memory HSQLDB table, as a script of literal
+ * statements and as a template with bound values. Each operation is rolled back, so that the table stays empty.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+
+    private static final String URL = "jdbc:hsqldb:mem:batchbenchmark";
+
+    @Param({ "100", "10000" })
+    private int statements;
+
+    /**
+     * Statements per round trip, 1 being the baseline without batching.
+     */
+    @Param({ "1", "100", "1000" })
+    private int batchSize;
+
+    private Database database;
+
+    private List<String> commands;
+
+    private List<List<Object>> rows;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new Database(DRIVER, URL, "sa", "");
+        database.executeCommand("DROP TABLE person IF EXISTS");
+        database.executeCommand("CREATE TABLE person (id INT, firstname VARCHAR(32), lastname VARCHAR(32), "
+                + "average DOUBLE)");
+        commands = new ArrayList<>(statements);
+        rows = new ArrayList<>(statements);
+        for (int i = 0; i < statements; i++) {
+            commands.add("INSERT INTO person VALUES (" + i + ", 'John', 'Doe', " + i / 3.0 + ")");
+            rows.add(Arrays.asList(i, "John", "Doe", i / 3.0));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.executeCommand("DROP TABLE person");
+        database.disconnect();
+    }
+
+    @Benchmark
+    public BatchResult scriptBatch() throws Exception {
+        try {
+            return database.executeBatch(commands, batchSize, 0, false);
+        } finally {
+            database.rollback();
+        }
+    }
+
+    @Benchmark
+    public BatchResult parameterizedBatch() throws Exception {
+        try {
+            return database.executeBatch("INSERT INTO person VALUES (?, ?, ?, ?)", rows, batchSize, 0, false);
+        } finally {
+            database.rollback();
+        }
+    }
+
+}
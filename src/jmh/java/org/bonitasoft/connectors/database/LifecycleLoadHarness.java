@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.sql.DataSource;
+
+import org.bonitasoft.connectors.database.datasource.DatasourceConnector;
+import org.bonitasoft.connectors.database.jdbc.JdbcConnector;
+import org.bonitasoft.engine.connector.Connector;
+import org.hsqldb.jdbc.JDBCDataSource;
+
+/**
+ * Drives the whole connector lifecycle, as the engine does (setInputParameters, validateInputParameters, connect,
+ * execute, disconnect), from concurrent threads against an in-memory HSQLDB database, and reports the latency
+ * percentiles, the throughput and the connections opened, to size the connector thread pool of the engine.
+ * <p>
+ * Runs with <code>./mvnw -Pbenchmark test-compile exec:java@load-harness</code>, configured with system properties:
+ * <ul>
+ * <li><code>load.connectors</code>: <code>jdbc</code>, <code>datasource</code> or both, comma-separated</li>
+ * <li><code>load.threads</code>: comma-separated numbers of threads, one run each</li>
+ * <li><code>load.warmup</code> and <code>load.duration</code>: seconds of each run discarded and measured</li>
+ * <li><code>load.rows</code>: rows of the queried table</li>
+ * <li><code>load.outputType</code>: output type of the JDBC connector</li>
+ * </ul>
+ * The connectors log each input at INFO level, which is lowered to WARNING so that logging does not dominate.
+ */
+public class LifecycleLoadHarness {
+
+    private static final String URL = "jdbc:hsqldb:mem:loadharness";
+
+    private static final String DATASOURCE = "java:/comp/env/jdbc/loadharness";
+
+    private static final String QUERY = "SELECT id, firstname, lastname, age, average FROM person WHERE age >= ?";
+
+    private static final Logger CONNECTORS_LOGGER = Logger.getLogger("org.bonitasoft.connectors");
+
+    private final AtomicLong openedConnections = new AtomicLong();
+
+    private final String outputType;
+
+    private final int warmup;
+
+    private final int duration;
+
+    public LifecycleLoadHarness(final String outputType, final int warmup, final int duration) {
+        this.outputType = outputType;
+        this.warmup = warmup;
+        this.duration = duration;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        CONNECTORS_LOGGER.setLevel(Level.WARNING);
+        final List<String> connectors = Arrays.asList(System.getProperty("load.connectors", "jdbc,datasource")
+                .split(","));
+        final LifecycleLoadHarness harness = new LifecycleLoadHarness(
+                System.getProperty("load.outputType", JdbcConnector.TABLE),
+                Integer.getInteger("load.warmup", 3), Integer.getInteger("load.duration", 10));
+        harness.createTable(Integer.getInteger("load.rows", 100));
+        final InitialContext context = harness.bindDataSource();
+        try {
+            System.out.println(String.format(Locale.ROOT, "%-10s %7s %9s %7s %10s %9s %9s %9s %9s %9s",
+                    "connector", "threads", "ops", "errors", "ops/s", "p50 ms", "p99 ms", "max ms", "opened",
+                    "pool size"));
+            for (final String threads : System.getProperty("load.threads", "1,4,16").split(",")) {
+                for (final String connector : connectors) {
+                    harness.run(connector.trim(), Integer.parseInt(threads.trim()));
+                }
+            }
+        } finally {
+            context.unbind(DATASOURCE);
+            context.close();
+            ConnectionPool.closeAll();
+        }
+    }
+
+    private void createTable(final int rows) throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE person (id INT PRIMARY KEY, firstname VARCHAR(25), "
+                    + "lastname VARCHAR(25), age INT, average DOUBLE)");
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO person VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, "John " + i);
+                    insert.setString(3, "Doe");
+                    insert.setInt(4, i % 90);
+                    insert.setDouble(5, i / 7.0);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Binds a data source counting the physical connections it opens, in the Tomcat naming context used by the
+     * datasource connector tests.
+     */
+    private InitialContext bindDataSource() throws Exception {
+        System.setProperty(Context.INITIAL_CONTEXT_FACTORY, "org.apache.naming.java.javaURLContextFactory");
+        System.setProperty(Context.URL_PKG_PREFIXES, "org.apache.naming");
+        final InitialContext context = new InitialContext();
+        context.createSubcontext("java:");
+        context.createSubcontext("java:/comp");
+        context.createSubcontext("java:/comp/env");
+        context.createSubcontext("java:/comp/env/jdbc");
+        final JDBCDataSource target = new JDBCDataSource();
+        target.setDatabase(URL);
+        target.setUser("sa");
+        target.setPassword("");
+        context.bind(DATASOURCE, Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[] { DataSource.class }, (proxy, method, methodArgs) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        openedConnections.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(target, methodArgs);
+                    } catch (final InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }));
+        return context;
+    }
+
+    private void run(final String connector, final int threads) throws Exception {
+        final Supplier<Connector> factory;
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put(JdbcConnector.SCRIPT, QUERY);
+        parameters.put(JdbcConnector.PARAMETERS, Arrays.asList(18));
+        if ("jdbc".equals(connector)) {
+            factory = JdbcConnector::new;
+            parameters.put(JdbcConnector.DRIVER, "org.hsqldb.jdbcDriver");
+            parameters.put(JdbcConnector.URL, URL);
+            parameters.put(JdbcConnector.USERNAME, "sa");
+            parameters.put(JdbcConnector.OUTPUT_TYPE, outputType);
+            parameters.put(JdbcConnector.CONNECTOR_DEFINITION_ID, "database-hsqldb");
+        } else if ("datasource".equals(connector)) {
+            factory = DatasourceConnector::new;
+            parameters.put(DatasourceConnector.DATASOURCE_INPUT, DATASOURCE);
+        } else {
+            throw new IllegalArgumentException("Unknown connector: " + connector);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final long warmupEnd = System.nanoTime() + warmup * 1_000_000_000L;
+            final long end = warmupEnd + duration * 1_000_000_000L;
+            final CountDownLatch warmedUp = new CountDownLatch(threads);
+            final List<Future<Sample>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(worker(factory, parameters, warmupEnd, end, warmedUp)));
+            }
+            warmedUp.await();
+            final long openedBefore = openedConnections.get();
+            final ConnectionPool pool = ConnectionPool.getPool("org.hsqldb.jdbcDriver", URL, "sa", null);
+            final long createdBefore = pool.getCreatedCount();
+            final Sample total = new Sample();
+            for (final Future<Sample> future : futures) {
+                total.addAll(future.get());
+            }
+            final long opened = "jdbc".equals(connector) ? pool.getCreatedCount() - createdBefore
+                    : openedConnections.get() - openedBefore;
+            total.report(connector, threads, duration, opened, "jdbc".equals(connector) ? pool.getSize() : 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Callable<Sample> worker(final Supplier<Connector> factory, final Map<String, Object> parameters,
+            final long warmupEnd, final long end, final CountDownLatch warmedUp) {
+        return () -> {
+            final Sample sample = new Sample();
+            boolean warming = true;
+            long now = System.nanoTime();
+            while (now < end) {
+                if (warming && now >= warmupEnd) {
+                    warming = false;
+                    sample.clear();
+                    warmedUp.countDown();
+                }
+                final long start = now;
+                try {
+                    final Connector connector = factory.get();
+                    connector.setInputParameters(parameters);
+                    connector.validateInputParameters();
+                    connector.connect();
+                    try {
+                        connector.execute();
+                    } finally {
+                        connector.disconnect();
+                    }
+                    now = System.nanoTime();
+                    sample.add(now - start);
+                } catch (final Exception e) {
+                    now = System.nanoTime();
+                    sample.error();
+                }
+            }
+            if (warming) {
+                warmedUp.countDown();
+            }
+            return sample;
+        };
+    }
+
+    /**
+     * Latencies in nanoseconds of the operations of a thread, merged at the end of a run.
+     */
+    private static final class Sample {
+
+        private long[] latencies = new long[1024];
+
+        private int count;
+
+        private long errors;
+
+        void add(final long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+
+        void error() {
+            errors++;
+        }
+
+        void clear() {
+            count = 0;
+            errors = 0;
+        }
+
+        void addAll(final Sample other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i]);
+            }
+            errors += other.errors;
+        }
+
+        void report(final String connector, final int threads, final int duration, final long opened,
+                final int poolSize) {
+            Arrays.sort(latencies, 0, count);
+            System.out.println(String.format(Locale.ROOT, "%-10s %7d %9d %7d %10.1f %9.3f %9.3f %9.3f %9d %9d",
+                    connector, threads, count, errors, count / (double) duration, percentile(0.50),
+                    percentile(0.99), count > 0 ? latencies[count - 1] / 1e6 : 0, opened, poolSize));
+        }
+
+        private double percentile(final double rank) {
+            if (count == 0) {
+                return 0;
+            }
+            return latencies[Math.min(count - 1, (int) Math.ceil(rank * count) - 1)] / 1e6;
+        }
+
+    }
+
+}
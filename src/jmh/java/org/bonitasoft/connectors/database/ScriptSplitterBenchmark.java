@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of {@link ScriptSplitter} on batch scripts of growing size, against the {@link StringTokenizer} split it
+ * replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScriptSplitterBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int statements;
+
+    private String script;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            builder.append("-- row ").append(i).append('\n')
+                    .append("INSERT INTO person (id, firstname, lastname, comment) VALUES (")
+                    .append(i).append(", 'John', 'O''Neil', 'a; b');\n");
+        }
+        script = builder.toString();
+    }
+
+    @Benchmark
+    public void split(final Blackhole blackhole) {
+        final SqlScript sqlScript = ScriptSplitter.split(script, ";");
+        for (int i = 0; i < sqlScript.size(); i++) {
+            blackhole.consume(sqlScript.getEnd(i) - sqlScript.getStart(i));
+        }
+    }
+
+    @Benchmark
+    public List<String> splitAndCopy() {
+        return new ArrayList<>(ScriptSplitter.split(script, ";").getCommands());
+    }
+
+    /**
+     * Entry point of the connector: classification and split of the script, served by the {@link ScriptCache} after
+     * the first call.
+     */
+    @Benchmark
+    public ParsedScript parseCached() {
+        return ScriptCache.parse(script, ";");
+    }
+
+    @Benchmark
+    public List<String> stringTokenizer() {
+        final List<String> commands = new ArrayList<>();
+        final StringTokenizer tokenizer = new StringTokenizer(script, ";");
+        while (tokenizer.hasMoreTokens()) {
+            commands.add(tokenizer.nextToken().trim());
+        }
+        return commands;
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.connector.ConnectorException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the output handlers of {@link JdbcConnector} reading an in-memory HSQLDB table of growing size and
+ * width. Each operation runs the query and converts the whole result, as the connector does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultHandlingBenchmark {
+
+    private static final String URL = "jdbc:hsqldb:mem:resultbenchmark";
+
+    @Param({ "10", "1000", "10000" })
+    private int rows;
+
+    /**
+     * Number of columns of the table query, cycling through integer, string, double and timestamp columns.
+     */
+    @Param({ "2", "10", "40" })
+    private int columns;
+
+    private Connection connection;
+
+    private JdbcConnector tableConnector;
+
+    private JdbcConnector columnConnector;
+
+    private JdbcConnector singleConnector;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(URL, "sa", "");
+        final StringBuilder create = new StringBuilder("CREATE TABLE bench (c0 INT PRIMARY KEY");
+        final StringBuilder insert = new StringBuilder("INSERT INTO bench VALUES (?");
+        for (int c = 1; c < columns; c++) {
+            create.append(", c").append(c).append(' ').append(sqlType(c));
+            insert.append(", ?");
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE bench IF EXISTS");
+            statement.execute(create.append(')').toString());
+        }
+        try (PreparedStatement statement = connection.prepareStatement(insert.append(')').toString())) {
+            for (int r = 0; r < rows; r++) {
+                statement.setInt(1, r);
+                for (int c = 1; c < columns; c++) {
+                    statement.setObject(c + 1, value(c, r));
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        tableConnector = connector("SELECT * FROM bench", JdbcConnector.TABLE);
+        columnConnector = connector("SELECT c0 FROM bench", JdbcConnector.N_ROW);
+        singleConnector = connector("SELECT COUNT(*) FROM bench", JdbcConnector.SINGLE);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE bench");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> tableResult() throws SQLException, ConnectorException {
+        final Map<String, Object> result = new HashMap<>();
+        try (Statement statement = createStatement(0)) {
+            tableConnector.handleTableResult(statement.executeQuery("SELECT * FROM bench"), result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, Object> nRowResult() throws SQLException, ConnectorException {
+        final Map<String, Object> result = new HashMap<>();
+        try (Statement statement = createStatement(0)) {
+            columnConnector.handleNRowResult(statement.executeQuery("SELECT c0 FROM bench"), result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, Object> singleResult() throws SQLException, ConnectorException {
+        final Map<String, Object> result = new HashMap<>();
+        try (Statement statement = createStatement(1)) {
+            singleConnector.handleSingleResult(statement.executeQuery("SELECT COUNT(*) FROM bench"), result);
+        }
+        return result;
+    }
+
+    private Statement createStatement(final int maxRows) throws SQLException {
+        final Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        statement.setMaxRows(maxRows);
+        return statement;
+    }
+
+    private static JdbcConnector connector(final String script, final String outputType) {
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put(JdbcConnector.URL, URL);
+        parameters.put(JdbcConnector.DRIVER, "org.hsqldb.jdbcDriver");
+        parameters.put(JdbcConnector.SCRIPT, script);
+        parameters.put(JdbcConnector.OUTPUT_TYPE, outputType);
+        final JdbcConnector connector = new JdbcConnector();
+        connector.setInputParameters(parameters);
+        return connector;
+    }
+
+    private static String sqlType(final int column) {
+        switch (column % 4) {
+            case 0:
+                return "INT";
+            case 1:
+                return "VARCHAR(32)";
+            case 2:
+                return "DOUBLE";
+            default:
+                return "TIMESTAMP";
+        }
+    }
+
+    private static Object value(final int column, final int row) {
+        switch (column % 4) {
+            case 0:
+                return row * column;
+            case 1:
+                return "value " + row + '/' + column;
+            case 2:
+                return row / (double) column;
+            default:
+                return new Timestamp(1_600_000_000_000L + row * 1000L);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Progress of a batch execution: statements executed and committed so far, rows affected by each chunk sent to the
+ * database, and elapsed time.
+ */
+public class BatchResult {
+
+    private final long start = System.nanoTime();
+
+    private final List<Integer> updateCounts = new ArrayList<>();
+
+    private int executedStatements;
+
+    private int committedStatements;
+
+    private long elapsedTime;
+
+    void chunkExecuted(final int[] chunkUpdateCounts) {
+        int sum = 0;
+        for (final int updateCount : chunkUpdateCounts) {
+            if (updateCount == Statement.SUCCESS_NO_INFO) {
+                sum = Statement.SUCCESS_NO_INFO;
+                break;
+            }
+            sum += updateCount;
+        }
+        updateCounts.add(sum);
+        executedStatements += chunkUpdateCounts.length;
+        elapsedTime = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    void committed() {
+        committedStatements = executedStatements;
+        elapsedTime = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * @return the number of rows affected by each chunk, {@link Statement#SUCCESS_NO_INFO} when the driver does not
+     *         report it
+     */
+    public List<Integer> getUpdateCounts() {
+        return Collections.unmodifiableList(updateCounts);
+    }
+
+    public int getExecutedStatements() {
+        return executedStatements;
+    }
+
+    public int getCommittedStatements() {
+        return committedStatements;
+    }
+
+    /**
+     * @return time in milliseconds from the start of the batch to the last executed chunk or commit
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+        return executedStatements + " statements executed, " + committedStatements + " committed, in "
+                + elapsedTime + " ms";
+    }
+
+}
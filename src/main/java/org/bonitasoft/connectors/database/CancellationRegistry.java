@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the statements running for each connector execution, so that they can be cancelled from another
+ * thread with {@link Statement#cancel()}: by an administrator through {@link #cancel(String)}, or by the watchdog
+ * when a statement runs longer than its query timeout.
+ * <p>
+ * The watchdog enforces the timeout on the wall clock, from the execution of the statement to the release of its
+ * result set, for the drivers that ignore {@link Statement#setQueryTimeout(int)} or only apply it to the execution.
+ * It fires {@value #WATCHDOG_GRACE} ms after the timeout, to let the driver report its own timeout first.
+ */
+public final class CancellationRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(CancellationRegistry.class.getName());
+
+    static final long WATCHDOG_GRACE = 1000;
+
+    private static final Map<String, Execution> EXECUTIONS = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService WATCHDOG = newWatchdog();
+
+    private static final Future<?> NO_WATCHDOG = CompletableFuture.completedFuture(null);
+
+    private CancellationRegistry() {
+    }
+
+    /**
+     * Registers a new execution, to be closed when the connector releases its connections.
+     *
+     * @param description what the execution runs, shown by {@link #getExecutions()}
+     */
+    public static Execution register(final String description) {
+        final Execution execution = new Execution(UUID.randomUUID().toString(), description);
+        EXECUTIONS.put(execution.getId(), execution);
+        return execution;
+    }
+
+    /**
+     * @return the executions currently registered
+     */
+    public static Collection<Execution> getExecutions() {
+        return Collections.unmodifiableCollection(new ArrayList<>(EXECUTIONS.values()));
+    }
+
+    /**
+     * Cancels the running statements of an execution, and the ones it would start afterwards.
+     *
+     * @return false when no execution is registered with that id
+     */
+    public static boolean cancel(final String id) {
+        final Execution execution = EXECUTIONS.get(id);
+        if (execution == null) {
+            return false;
+        }
+        execution.cancel();
+        return true;
+    }
+
+    private static ScheduledExecutorService newWatchdog() {
+        final ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "bonita-db-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+        return watchdog;
+    }
+
+    private static void cancel(final Statement statement) {
+        try {
+            statement.cancel();
+        } catch (final SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to cancel statement", e);
+        }
+    }
+
+    /**
+     * The statements of one connector execution, on all of its connections.
+     */
+    public static final class Execution implements AutoCloseable {
+
+        private final String id;
+
+        private final String description;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final Map<Statement, Future<?>> statements = new ConcurrentHashMap<>();
+
+        private volatile boolean cancelled;
+
+        private Execution(final String id, final String description) {
+            this.id = id;
+            this.description = description;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * @return time in milliseconds since the epoch at which the execution was registered
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public int getRunningStatements() {
+            return statements.size();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Cancels the running statements and refuses new ones.
+         */
+        public void cancel() {
+            cancelled = true;
+            LOGGER.warning("Cancelling execution " + id + ": " + description);
+            for (final Statement statement : statements.keySet()) {
+                CancellationRegistry.cancel(statement);
+            }
+        }
+
+        /**
+         * Tracks a statement until {@link #release(Statement)}.
+         *
+         * @param timeout time in milliseconds after which the watchdog cancels the statement, 0 for no limit
+         * @throws SQLException when the execution is cancelled
+         */
+        void track(final Statement statement, final long timeout) throws SQLException {
+            if (cancelled) {
+                throw new SQLException("Execution " + id + " was cancelled", "57014");
+            }
+            Future<?> watchdog = NO_WATCHDOG;
+            if (timeout > 0) {
+                watchdog = WATCHDOG.schedule(() -> {
+                    LOGGER.warning("Statement of execution " + id + " exceeded its timeout of " + timeout
+                            + " ms, cancelling it");
+                    CancellationRegistry.cancel(statement);
+                }, timeout + WATCHDOG_GRACE, TimeUnit.MILLISECONDS);
+            }
+            final Future<?> previous = statements.put(statement, watchdog);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            if (cancelled) {
+                // cancelled while registering the statement: cancel it ourselves
+                CancellationRegistry.cancel(statement);
+            }
+        }
+
+        void release(final Statement statement) {
+            final Future<?> watchdog = statements.remove(statement);
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+
+        /**
+         * Unregisters the execution.
+         */
+        @Override
+        public void close() {
+            EXECUTIONS.remove(id);
+            for (final Statement statement : new ArrayList<>(statements.keySet())) {
+                release(statement);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return id + " (" + statements.size() + " running statements, started at " + startTime + "): "
+                    + description;
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the commands of a script into groups of commands that do not depend on each other, so that the groups can be
+ * executed concurrently by {@link ParallelBatch}. A group starts at a command preceded by a line comment
+ * <code>--@group</code>, optionally followed by a name; the commands before the first marker form the first group.
+ * The commands of a group keep their order.
+ */
+public final class CommandGroups {
+
+    private static final Pattern MARKER = Pattern.compile("--\\s*@group\\b.*");
+
+    private CommandGroups() {
+    }
+
+    public static List<List<String>> split(final List<String> commands) {
+        final List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (final String command : commands) {
+            if (startsGroup(command) && !group.isEmpty()) {
+                groups.add(group);
+                group = new ArrayList<>();
+            }
+            group.add(command);
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * @return whether one of the line comments leading the command is a group marker
+     */
+    static boolean startsGroup(final String command) {
+        int start = 0;
+        while (command.startsWith("--", start)) {
+            final int end = command.indexOf('\n', start);
+            final String comment = (end < 0 ? command.substring(start) : command.substring(start, end)).trim();
+            if (MARKER.matcher(comment).matches()) {
+                return true;
+            }
+            if (end < 0) {
+                return false;
+            }
+            start = end + 1;
+            while (start < command.length() && Character.isWhitespace(command.charAt(start))) {
+                start++;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide pool of JDBC connections, one pool per (driver, url, username, credential hash).
+ * <p>
+ * Connections are validated on borrow, reset on release (rollback of pending work, auto-commit restored) and closed
+ * by a housekeeping task once idle for too long or older than the maximum lifetime.
+ */
+public class ConnectionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final Map<Key, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private static volatile PoolConfiguration configuration = PoolConfiguration.fromSystemProperties();
+
+    private static ScheduledExecutorService housekeeper;
+
+    private final Key key;
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final PoolConfiguration poolConfiguration;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+    private final Semaphore permits;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong created = new AtomicLong();
+
+    private final AtomicLong destroyed = new AtomicLong();
+
+    private final AtomicLong borrowed = new AtomicLong();
+
+    private ConnectionPool(final Key key, final String url, final String username, final String password,
+            final PoolConfiguration poolConfiguration) {
+        this.key = key;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.poolConfiguration = poolConfiguration;
+        permits = new Semaphore(poolConfiguration.getMaxSize(), true);
+    }
+
+    public static PoolConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Replaces the configuration used by pools created afterwards. Existing pools are closed so that the new settings
+     * apply to every key.
+     */
+    public static synchronized void setConfiguration(final PoolConfiguration newConfiguration) {
+        configuration = newConfiguration;
+        closeAll();
+    }
+
+    /**
+     * @return the pool for the given connection settings, created and its driver loaded on first use
+     */
+    public static ConnectionPool getPool(final String driver, final String url, final String username,
+            final String password) throws ClassNotFoundException {
+        final Key key = new Key(driver, url, username, hash(password));
+        ConnectionPool pool = POOLS.get(key);
+        if (pool == null) {
+            Class.forName(driver);
+            pool = POOLS.computeIfAbsent(key,
+                    k -> new ConnectionPool(k, url, username, password, configuration));
+            startHousekeeper(pool.poolConfiguration.getHousekeepingPeriod());
+        }
+        return pool;
+    }
+
+    /**
+     * Closes every idle connection and forgets all pools. Connections still borrowed are closed when released.
+     */
+    public static synchronized void closeAll() {
+        for (final ConnectionPool pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * Closes all pools like {@link #closeAll()} and stops the housekeeping thread, e.g. when the hosting application
+     * is undeployed. Pools requested afterwards start a new housekeeping thread.
+     */
+    public static synchronized void shutdown() {
+        closeAll();
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+            housekeeper = null;
+        }
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        try {
+            if (!permits.tryAcquire(poolConfiguration.getBorrowTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout after " + poolConfiguration.getBorrowTimeout()
+                        + "ms waiting for a connection to " + url + " (pool size " + poolConfiguration.getMaxSize()
+                        + ")");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + url, e);
+        }
+        try {
+            final PooledConnection connection = takeIdleOrCreate();
+            borrowed.incrementAndGet();
+            return connection;
+        } catch (final SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (candidate.isExpired(System.currentTimeMillis(), poolConfiguration.getMaxLifetime())
+                    || !isValid(candidate)) {
+                destroy(candidate);
+            } else {
+                candidate.touch();
+                return candidate;
+            }
+        }
+        return create();
+    }
+
+    private boolean isValid(final PooledConnection candidate) {
+        try {
+            return candidate.getConnection().isValid(poolConfiguration.getValidationTimeout());
+        } catch (final SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back. Pending work is rolled back; a connection that cannot be reset, or that
+     * exceeded its lifetime, is closed instead of being kept.
+     */
+    public void release(final PooledConnection pooledConnection) {
+        try {
+            if (POOLS.get(key) != this || !reset(pooledConnection.getConnection())
+                    || pooledConnection.isExpired(System.currentTimeMillis(), poolConfiguration.getMaxLifetime())) {
+                destroy(pooledConnection);
+            } else {
+                pooledConnection.touch();
+                idle.offerFirst(pooledConnection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes a borrowed connection that must not be reused, e.g. after a fatal error.
+     */
+    public void invalidate(final PooledConnection pooledConnection) {
+        try {
+            destroy(pooledConnection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(final Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+            return true;
+        } catch (final SQLException e) {
+            LOGGER.log(Level.FINE, "Unable to reset connection to " + url + ", it will be closed", e);
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        final Connection connection = DriverManager.getConnection(url, username, password);
+        size.incrementAndGet();
+        created.incrementAndGet();
+        return new PooledConnection(this, connection, poolConfiguration.getStatementCacheSize());
+    }
+
+    private void destroy(final PooledConnection pooledConnection) {
+        size.decrementAndGet();
+        destroyed.incrementAndGet();
+        try {
+            pooledConnection.getConnection().close();
+        } catch (final SQLException e) {
+            LOGGER.log(Level.FINE, "Error while closing connection to " + url, e);
+        }
+    }
+
+    /**
+     * Closes idle connections above minIdle that were unused for longer than the idle timeout, as well as the ones
+     * that exceeded their lifetime, then opens connections until minIdle is reached. A connection is only opened
+     * while a permit is free, so that together with the borrowed ones the pool never exceeds its maximum size.
+     */
+    void evict() {
+        final long now = System.currentTimeMillis();
+        final List<PooledConnection> evicted = new ArrayList<>();
+        final Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            final PooledConnection candidate = iterator.next();
+            final boolean idleTooLong = now - candidate.getLastUsedAt() >= poolConfiguration.getIdleTimeout()
+                    && idle.size() > poolConfiguration.getMinIdle();
+            if ((idleTooLong || candidate.isExpired(now, poolConfiguration.getMaxLifetime()))
+                    && idle.remove(candidate)) {
+                evicted.add(candidate);
+            }
+        }
+        evicted.forEach(this::destroy);
+        while (idle.size() < poolConfiguration.getMinIdle() && permits.tryAcquire()) {
+            try {
+                if (size.get() >= poolConfiguration.getMaxSize()) {
+                    return;
+                }
+                idle.offerLast(create());
+            } catch (final SQLException e) {
+                LOGGER.log(Level.WARNING, "Unable to open idle connection to " + url, e);
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void close() {
+        PooledConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            destroy(candidate);
+        }
+    }
+
+    /**
+     * @return number of open connections, idle and borrowed
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return poolConfiguration.getMaxSize() - permits.availablePermits();
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getDestroyedCount() {
+        return destroyed.get();
+    }
+
+    public long getBorrowedCount() {
+        return borrowed.get();
+    }
+
+    private static synchronized void startHousekeeper(final long period) {
+        if (housekeeper == null) {
+            housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "bonita-connector-database-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeper.scheduleWithFixedDelay(ConnectionPool::evictAll, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void evictAll() {
+        for (final ConnectionPool pool : POOLS.values()) {
+            try {
+                pool.evict();
+            } catch (final RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Connection pool housekeeping failed for " + pool.url, e);
+            }
+        }
+    }
+
+    private static String hash(final String password) {
+        if (password == null) {
+            return "";
+        }
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(password.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Key {
+
+        private final String driver;
+
+        private final String url;
+
+        private final String username;
+
+        private final String credentialHash;
+
+        private Key(final String driver, final String url, final String username, final String credentialHash) {
+            this.driver = driver;
+            this.url = url;
+            this.username = username;
+            this.credentialHash = credentialHash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(driver, other.driver) && Objects.equals(url, other.url)
+                    && Objects.equals(username, other.username) && credentialHash.equals(other.credentialHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(driver, url, username, credentialHash);
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+/**
+ * Receives the metrics of the connector executions. Implementations are looked up with {@link java.util.ServiceLoader}
+ * (a <code>META-INF/services/org.bonitasoft.connectors.database.ConnectorMetrics</code> file listing the class), the
+ * first one found replacing the default {@link InMemoryMetrics}. They are called by the connectors concurrently and
+ * must be thread safe and cheap.
+ * <p>
+ * Each measure is tagged with the id of the connector definition, such as <code>database-mysql</code>, and the
+ * {@link QueryFingerprint} of the script.
+ */
+public interface ConnectorMetrics {
+
+    /**
+     * Timed phases of an execution.
+     */
+    enum Phase {
+        /** Loading the driver and getting a connection. */
+        CONNECT,
+        /** Running the statement, up to the first row or the update counts. */
+        EXECUTE,
+        /** Reading the rows from the driver, mapping excluded when it is measured separately. */
+        FETCH,
+        /** Converting the rows into output values. */
+        MAP,
+        /** Releasing the connection. */
+        DISCONNECT
+    }
+
+    /**
+     * Counted quantities of an execution.
+     */
+    enum Counter {
+        ROWS_FETCHED,
+        CELLS_MAPPED,
+        /** Statements sent by a batch. */
+        BATCH_SIZE,
+        /** Estimated size of the result in bytes. */
+        ESTIMATED_BYTES
+    }
+
+    /**
+     * @param nanos duration of the phase in nanoseconds
+     */
+    void recordTime(Phase phase, String definitionId, String fingerprint, long nanos);
+
+    void recordCount(Counter counter, String definitionId, String fingerprint, long amount);
+
+}
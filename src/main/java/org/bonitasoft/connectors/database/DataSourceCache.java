@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * Process-wide cache of the {@link DataSource}s resolved through JNDI, keyed by the JNDI name and the environment
+ * properties of the {@link InitialContext}.
+ * <p>
+ * An entry is dropped by {@link #invalidate(String, Properties)} when the DataSource fails to provide a connection,
+ * so that the next call looks it up again.
+ */
+public class DataSourceCache {
+
+    private static final Map<Key, DataSource> DATA_SOURCES = new ConcurrentHashMap<>();
+
+    private static final AtomicLong HITS = new AtomicLong();
+
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private DataSourceCache() {
+    }
+
+    public static DataSource lookup(final String name, final Properties properties) throws NamingException {
+        final Key key = new Key(name, properties);
+        final DataSource cached = DATA_SOURCES.get(key);
+        if (cached != null) {
+            HITS.incrementAndGet();
+            return cached;
+        }
+        MISSES.incrementAndGet();
+        final Context ctx = new InitialContext(properties);
+        try {
+            final DataSource dataSource = (DataSource) ctx.lookup(name);
+            DATA_SOURCES.put(key, dataSource);
+            return dataSource;
+        } finally {
+            ctx.close();
+        }
+    }
+
+    public static void invalidate(final String name, final Properties properties) {
+        DATA_SOURCES.remove(new Key(name, properties));
+    }
+
+    public static void clear() {
+        DATA_SOURCES.clear();
+    }
+
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    public static int size() {
+        return DATA_SOURCES.size();
+    }
+
+    private static final class Key {
+
+        private final String name;
+
+        private final Map<Object, Object> environment;
+
+        private Key(final String name, final Properties properties) {
+            this.name = name;
+            environment = properties == null ? Collections.emptyMap() : new HashMap<>(properties);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(name, other.name) && environment.equals(other.environment);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, environment);
+        }
+
+    }
+
+}
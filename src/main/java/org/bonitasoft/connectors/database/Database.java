@@ -19,14 +19,15 @@ package org.bonitasoft.connectors.database;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import javax.naming.Context;
-import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 
@@ -39,44 +40,267 @@ import org.bonitasoft.engine.connector.ConnectorException;
  */
 public class Database {
 
-    private final Connection connection;
+    private static final Logger LOGGER = Logger.getLogger(Database.class.getName());
 
-    private Context ctx;
+    private final Connection connection;
 
     private Statement selectStatement;
 
+    private ResultSet selectResultSet;
+
+    private boolean selectStatementCached;
+
+    private PooledConnection pooledConnection;
+
+    private int fetchSize;
+
+    private boolean autoCommitDisabledForCursor;
+
+    private boolean disconnected;
+
+    private int queryTimeout;
+
+    private CancellationRegistry.Execution execution;
+
+    /**
+     * Borrows a connection from the shared {@link ConnectionPool} of the given settings, or opens a dedicated one when
+     * pooling is disabled.
+     */
     public Database(final String driver, final String url, final String username, final String password)
             throws ClassNotFoundException, SQLException {
-        Class.forName(driver);
-        connection = DriverManager.getConnection(url, username, password);
+        if (ConnectionPool.getConfiguration().isEnabled()) {
+            pooledConnection = ConnectionPool.getPool(driver, url, username, password).borrow();
+            connection = pooledConnection.getConnection();
+        } else {
+            Class.forName(driver);
+            connection = DriverManager.getConnection(url, username, password);
+        }
     }
 
+    /**
+     * Gets a connection from the DataSource bound to the given JNDI name. The DataSource is resolved once and kept in
+     * the {@link DataSourceCache} until it fails to provide a connection.
+     */
     public Database(final String dataSource, final Properties properties) throws NamingException, SQLException {
-        ctx = new InitialContext(properties);
-        final DataSource ds = (DataSource) ctx.lookup(dataSource);
-        connection = ds.getConnection();
+        final DataSource ds = DataSourceCache.lookup(dataSource, properties);
+        try {
+            connection = ds.getConnection();
+        } catch (final SQLException | RuntimeException e) {
+            DataSourceCache.invalidate(dataSource, properties);
+            throw e;
+        }
     }
 
+    /**
+     * Releases the connection, after rolling back the work of a streamed query that {@link #commitCursor()} did not
+     * commit. Calling it again has no effect.
+     */
     public void disconnect() throws SQLException, NamingException {
-        if (selectStatement != null) {
-            selectStatement.close();
-            selectStatement = null;
-        }
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
+        if (disconnected) {
+            return;
         }
-        if (ctx != null) {
-            ctx.close();
+        disconnected = true;
+        try {
+            if (selectStatement != null) {
+                closeSelectStatement();
+            }
+            if (autoCommitDisabledForCursor) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+                autoCommitDisabledForCursor = false;
+            }
+        } finally {
+            if (pooledConnection != null) {
+                pooledConnection.getPool().release(pooledConnection);
+                pooledConnection = null;
+            } else if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
         }
     }
 
+    /**
+     * @param fetchSize number of rows fetched per round trip by the statements of this database, 0 to keep the
+     *        driver default
+     */
+    public void setFetchSize(final int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @param queryTimeout time in seconds given to each statement, see {@link Statement#setQueryTimeout(int)}; 0 for
+     *        no limit
+     */
+    public void setQueryTimeout(final int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * @param execution the execution tracking the statements of this database, so that they can be cancelled by
+     *        another thread and by the watchdog of the query timeout
+     */
+    public void setExecution(final CancellationRegistry.Execution execution) {
+        this.execution = execution;
+    }
+
     public ResultSet select(final String query) throws ConnectorException, SQLException {
+        return select(query, ResultSet.TYPE_SCROLL_INSENSITIVE, 0);
+    }
+
+    /**
+     * Executes a query on a read-only cursor.
+     * <p>
+     * With {@link ResultSet#TYPE_FORWARD_ONLY} and a fetch size, drivers can stream the rows instead of buffering the
+     * whole result before returning the first one. PostgreSQL only uses a server-side cursor outside of auto-commit
+     * mode, so auto-commit is disabled until {@link #commitCursor()} or {@link #disconnect()} in that case.
+     *
+     * @param resultSetType {@link ResultSet#TYPE_FORWARD_ONLY} or {@link ResultSet#TYPE_SCROLL_INSENSITIVE}
+     * @param maxRows maximum number of rows the driver returns, also used as fetch size; 0 for no limit
+     */
+    public ResultSet select(final String query, final int resultSetType, final int maxRows)
+            throws ConnectorException, SQLException {
+        openCursor(resultSetType, maxRows, true);
+        selectStatement = connection.createStatement(resultSetType, ResultSet.CONCUR_READ_ONLY);
+        configure(selectStatement, maxRows);
+        selectResultSet = selectStatement.executeQuery(query);
+        return selectResultSet;
+    }
+
+    /**
+     * Executes a query with bound parameters on a read-only cursor. On a pooled connection, the
+     * {@link PreparedStatement} comes from the statement cache of the connection.
+     *
+     * @see #select(String, int, int)
+     */
+    public ResultSet select(final ParameterizedSql query, final int resultSetType, final int maxRows)
+            throws ConnectorException, SQLException {
+        openCursor(resultSetType, maxRows, true);
+        final PreparedStatement statement = prepareStatement(query.getSql(), resultSetType);
+        selectStatement = statement;
+        selectStatementCached = isStatementCacheEnabled();
+        configure(statement, maxRows);
+        query.bind(statement);
+        selectResultSet = statement.executeQuery();
+        return selectResultSet;
+    }
+
+    /**
+     * Executes a statement that may or may not produce a result set, such as a procedure call. When it produces one,
+     * the statement stays opened like the one of {@link #select(String, int, int)}; otherwise it is closed.
+     *
+     * @return the result set, or null when the statement produced an update count
+     */
+    public ResultSet execute(final String sql, final int resultSetType, final int maxRows)
+            throws ConnectorException, SQLException {
+        openCursor(resultSetType, maxRows, false);
+        selectStatement = connection.createStatement(resultSetType, ResultSet.CONCUR_READ_ONLY);
+        configure(selectStatement, maxRows);
+        if (selectStatement.execute(sql)) {
+            selectResultSet = selectStatement.getResultSet();
+            return selectResultSet;
+        }
+        closeSelectStatement();
+        return null;
+    }
+
+    /**
+     * @see #execute(String, int, int)
+     */
+    public ResultSet execute(final ParameterizedSql sql, final int resultSetType, final int maxRows)
+            throws ConnectorException, SQLException {
+        openCursor(resultSetType, maxRows, false);
+        final PreparedStatement statement = prepareStatement(sql.getSql(), resultSetType);
+        selectStatement = statement;
+        selectStatementCached = isStatementCacheEnabled();
+        configure(statement, maxRows);
+        sql.bind(statement);
+        if (statement.execute()) {
+            selectResultSet = statement.getResultSet();
+            return selectResultSet;
+        }
+        closeSelectStatement();
+        return null;
+    }
+
+    /**
+     * @param streaming whether auto-commit can be disabled for the driver to stream the rows, which is only safe when
+     *        the statement is known to be a query: the transaction is committed by {@link #commitCursor()} once the
+     *        rows are read, and rolled back on disconnect otherwise
+     */
+    private void openCursor(final int resultSetType, final int maxRows, final boolean streaming)
+            throws ConnectorException, SQLException {
         if (selectStatement != null) {
             throw new ConnectorException("A Statement is already opened.");
         }
-        selectStatement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE,
-                ResultSet.CONCUR_READ_ONLY);
-        return selectStatement.executeQuery(query);
+        if (streaming && resultSetType == ResultSet.TYPE_FORWARD_ONLY && maxRows == 0 && fetchSize > 0
+                && connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+            autoCommitDisabledForCursor = true;
+        }
+    }
+
+    private void configure(final Statement statement, final int maxRows) throws SQLException {
+        statement.setMaxRows(maxRows);
+        statement.setFetchSize(maxRows > 0 ? maxRows : fetchSize);
+        track(statement);
+    }
+
+    /**
+     * Applies the query timeout, which is also reset on cached statements, and registers the statement in the
+     * execution until {@link #release(Statement)}.
+     */
+    private void track(final Statement statement) throws SQLException {
+        statement.setQueryTimeout(queryTimeout);
+        if (execution != null) {
+            execution.track(statement, queryTimeout * 1000L);
+        }
+    }
+
+    private void release(final Statement statement) {
+        if (execution != null && statement != null) {
+            execution.release(statement);
+        }
+    }
+
+    /**
+     * Closes the result set returned by the last select, so that another one can be opened.
+     */
+    public void closeCursor() throws SQLException {
+        if (selectStatement != null) {
+            closeSelectStatement();
+        }
+    }
+
+    /**
+     * Closes the result set returned by the last select and, when auto-commit was disabled to stream its rows,
+     * commits the transaction and restores auto-commit, so that the effects of the query, e.g. of a function it
+     * calls, are kept. To be called once the rows were read successfully: {@link #disconnect()} rolls back otherwise.
+     */
+    public void commitCursor() throws SQLException {
+        closeCursor();
+        if (autoCommitDisabledForCursor) {
+            connection.commit();
+            connection.setAutoCommit(true);
+            autoCommitDisabledForCursor = false;
+        }
+    }
+
+    private void closeSelectStatement() throws SQLException {
+        release(selectStatement);
+        try {
+            if (selectStatementCached) {
+                if (selectResultSet != null) {
+                    selectResultSet.close();
+                }
+                ((PreparedStatement) selectStatement).clearParameters();
+            } else {
+                selectStatement.close();
+            }
+        } finally {
+            selectStatement = null;
+            selectResultSet = null;
+            selectStatementCached = false;
+        }
     }
 
     public boolean executeCommand(final String command) throws SQLException, ConnectorException {
@@ -84,10 +308,12 @@ public class Database {
         boolean isExecuted = false;
         try {
             statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            track(statement);
             isExecuted = statement.execute(command);
         } catch (SQLException e) {
             throw new ConnectorException(e);
         } finally {
+            release(statement);
             if (statement != null) {
                 statement.close();
             }
@@ -95,6 +321,40 @@ public class Database {
         return isExecuted;
     }
 
+    public boolean executeCommand(final ParameterizedSql command) throws SQLException, ConnectorException {
+        PreparedStatement statement = null;
+        boolean isExecuted = false;
+        try {
+            statement = prepareStatement(command.getSql(), ResultSet.TYPE_FORWARD_ONLY);
+            track(statement);
+            command.bind(statement);
+            isExecuted = statement.execute();
+        } catch (SQLException e) {
+            throw new ConnectorException(e);
+        } finally {
+            release(statement);
+            if (statement != null) {
+                if (isStatementCacheEnabled()) {
+                    statement.clearParameters();
+                } else {
+                    statement.close();
+                }
+            }
+        }
+        return isExecuted;
+    }
+
+    private boolean isStatementCacheEnabled() {
+        return pooledConnection != null && pooledConnection.isStatementCacheEnabled();
+    }
+
+    private PreparedStatement prepareStatement(final String sql, final int resultSetType) throws SQLException {
+        if (isStatementCacheEnabled()) {
+            return pooledConnection.prepareCachedStatement(sql, resultSetType);
+        }
+        return connection.prepareStatement(sql, resultSetType, ResultSet.CONCUR_READ_ONLY);
+    }
+
     /**
      * Does not produce an output result. A Statement is created, executed and closed.
      * 
@@ -105,25 +365,175 @@ public class Database {
      */
     public void executeBatch(final List<String> commands, final boolean commit)
             throws SQLException, ConnectorException {
+        executeBatch(commands, commands.size(), 0, commit);
+    }
+
+    /**
+     * Sends the commands to the database in chunks of batchSize commands, committing every commitInterval commands,
+     * so that large scripts neither build a huge batch in the driver nor hold their locks until the end. A
+     * Statement is created, executed and closed.
+     *
+     * @param commands the list of SQL command to execute
+     * @param batchSize number of commands sent per chunk
+     * @param commitInterval number of commands between two intermediate commits, 0 to only commit at the end
+     * @param commit commit after the last chunk
+     * @throws ConnectorException when a chunk fails, with the progress made so far in its message
+     */
+    public BatchResult executeBatch(final List<String> commands, final int batchSize, final int commitInterval,
+            final boolean commit) throws SQLException, ConnectorException {
+        final BatchResult result = new BatchResult();
         Statement statement = null;
         try {
             connection.setAutoCommit(false);
             statement = connection.createStatement();
+            track(statement);
+            int pending = 0;
+            int added = 0;
             for (final String command : commands) {
                 statement.addBatch(command);
+                pending++;
+                added++;
+                final boolean commitPoint = commitInterval > 0 && added % commitInterval == 0;
+                if (pending == batchSize || commitPoint) {
+                    flush(statement, result);
+                    pending = 0;
+                }
+                if (commitPoint) {
+                    commit(result);
+                }
+            }
+            if (pending > 0) {
+                flush(statement, result);
             }
-            statement.executeBatch();
-
             if (commit) {
-                connection.commit();
+                commit(result);
             }
+            return result;
         } catch (SQLException e) {
-            throw new ConnectorException(e);
+            throw batchFailure(result, e);
         } finally {
+            release(statement);
             if (statement != null) {
                 statement.close();
             }
         }
     }
 
+    /**
+     * @return true when the value can be given as rows to {@link #executeBatch(String, List, int, int, boolean)}, or
+     *         is null
+     */
+    public static boolean isBatchParameters(final Object rows) {
+        if (rows == null) {
+            return true;
+        }
+        if (!(rows instanceof List)) {
+            return false;
+        }
+        for (final Object row : (List<?>) rows) {
+            if (!(row instanceof List)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a statement with bound parameters once per row. Rows are sent to the database in chunks of batchSize
+     * rows. On failure, the work done since the last commit is rolled back.
+     *
+     * @param template the SQL statement, with a <code>?</code> placeholder per value of a row
+     * @param rows the values bound to the placeholders, one list per execution
+     * @param batchSize number of rows sent per chunk
+     * @param commitInterval number of rows between two intermediate commits, 0 to only commit at the end
+     * @param commit commit after the last chunk
+     * @throws ConnectorException when a chunk fails, with the progress made so far in its message
+     */
+    public BatchResult executeBatch(final String template, final List<List<Object>> rows, final int batchSize,
+            final int commitInterval, final boolean commit) throws SQLException, ConnectorException {
+        final BatchResult result = new BatchResult();
+        PreparedStatement statement = null;
+        try {
+            connection.setAutoCommit(false);
+            statement = prepareStatement(template, ResultSet.TYPE_FORWARD_ONLY);
+            track(statement);
+            int pending = 0;
+            int added = 0;
+            for (final List<Object> row : rows) {
+                for (int i = 0; i < row.size(); i++) {
+                    ParameterizedSql.bind(statement, i + 1, row.get(i));
+                }
+                statement.addBatch();
+                pending++;
+                added++;
+                final boolean commitPoint = commitInterval > 0 && added % commitInterval == 0;
+                if (pending == batchSize || commitPoint) {
+                    flush(statement, result);
+                    pending = 0;
+                }
+                if (commitPoint) {
+                    commit(result);
+                }
+            }
+            if (pending > 0) {
+                flush(statement, result);
+            }
+            if (commit) {
+                commit(result);
+            }
+            return result;
+        } catch (SQLException e) {
+            throw batchFailure(result, e);
+        } finally {
+            release(statement);
+            if (statement != null) {
+                if (isStatementCacheEnabled()) {
+                    statement.clearBatch();
+                    statement.clearParameters();
+                } else {
+                    statement.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rolls back the chunks executed since the last commit. A rollback failure is kept as suppressed by the failure
+     * of the batch.
+     */
+    private ConnectorException batchFailure(final BatchResult result, final SQLException failure) {
+        try {
+            connection.rollback();
+        } catch (final SQLException e) {
+            failure.addSuppressed(e);
+        }
+        return new ConnectorException("Batch failed after " + result, failure);
+    }
+
+    private static void flush(final Statement statement, final BatchResult result) throws SQLException {
+        result.chunkExecuted(statement.executeBatch());
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Batch progress: " + result);
+        }
+    }
+
+    /**
+     * Commits the transaction left open by a batch executed without commit.
+     */
+    public void commit() throws SQLException {
+        connection.commit();
+    }
+
+    /**
+     * Rolls back the transaction left open by a batch executed without commit.
+     */
+    public void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    private void commit(final BatchResult result) throws SQLException {
+        connection.commit();
+        result.committed();
+    }
+
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * SQL syntax differences between the databases of the connector definitions, detected from the JDBC URL.
+ */
+public enum Dialect {
+
+    /** <code>LIMIT n</code>: MySQL, MariaDB, PostgreSQL, H2, HSQLDB, SQLite */
+    LIMIT,
+    /** SQL:2008 <code>FETCH FIRST n ROWS ONLY</code>: DB2, DB2 for IBM i, Derby, and unknown databases */
+    FETCH_FIRST,
+    /** <code>SELECT TOP n</code>: SQL Server, Sybase, Teradata, Access */
+    TOP,
+    /** <code>SELECT FIRST n</code>: Informix, Ingres */
+    FIRST,
+    /** <code>ROWNUM &lt;= n</code> around the query: Oracle, including versions before 12c */
+    ROWNUM;
+
+    public static Dialect fromUrl(final String url) {
+        final String lowerCaseUrl = url == null ? "" : url.toLowerCase(Locale.ROOT);
+        if (startsWith(lowerCaseUrl, "mysql", "mariadb", "postgresql", "h2", "hsqldb", "sqlite")) {
+            return LIMIT;
+        } else if (startsWith(lowerCaseUrl, "oracle")) {
+            return ROWNUM;
+        } else if (startsWith(lowerCaseUrl, "sqlserver", "jtds", "sybase", "teradata", "odbc", "ucanaccess")) {
+            return TOP;
+        } else if (startsWith(lowerCaseUrl, "informix", "ingres")) {
+            return FIRST;
+        }
+        return FETCH_FIRST;
+    }
+
+    /**
+     * @return the statement returning the execution plan of the query as a result set, null when the database of the
+     *         URL only writes plans into tables (Oracle, DB2) or into session messages (SQL Server, Sybase)
+     */
+    public static ParameterizedSql explain(final String url, final ParameterizedSql query) {
+        final String lowerCaseUrl = url == null ? "" : url.toLowerCase(Locale.ROOT);
+        if (startsWith(lowerCaseUrl, "mysql", "mariadb", "postgresql", "h2")) {
+            return ParameterizedSql.of("EXPLAIN " + query.getSql(), query.getValues());
+        } else if (startsWith(lowerCaseUrl, "hsqldb")) {
+            // parameters can't be bound to an HSQLDB plan, which does not depend on them
+            return ParameterizedSql.of("EXPLAIN PLAN FOR " + query.getSql(), Collections.emptyList());
+        } else if (startsWith(lowerCaseUrl, "sqlite")) {
+            return ParameterizedSql.of("EXPLAIN QUERY PLAN " + query.getSql(), query.getValues());
+        }
+        return null;
+    }
+
+    private static boolean startsWith(final String url, final String... subprotocols) {
+        for (final String subprotocol : subprotocols) {
+            if (url.startsWith("jdbc:" + subprotocol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Limits the number of rows returned by a query.
+     *
+     * @param select a query starting with <code>SELECT</code>, which may end with an <code>ORDER BY</code> clause
+     */
+    public String limit(final String select, final int rows) {
+        switch (this) {
+            case LIMIT:
+                return select + " LIMIT " + rows;
+            case TOP:
+                return insertAfterSelect(select, "TOP " + rows);
+            case FIRST:
+                return insertAfterSelect(select, "FIRST " + rows);
+            case ROWNUM:
+                return "SELECT * FROM (" + select + ") WHERE ROWNUM <= " + rows;
+            default:
+                return select + " FETCH FIRST " + rows + " ROWS ONLY";
+        }
+    }
+
+    private static String insertAfterSelect(final String select, final String clause) {
+        if (!select.regionMatches(true, 0, "SELECT ", 0, 7)) {
+            throw new IllegalArgumentException("Not a SELECT query: " + select);
+        }
+        return select.substring(0, 7) + clause + " " + select.substring(7);
+    }
+
+}
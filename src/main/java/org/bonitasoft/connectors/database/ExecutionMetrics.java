@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The metrics of one connector execution, with its tags. The {@link ConnectorMetrics} implementation is loaded once;
+ * the {@value #ENABLED_PROPERTY} system property set to false disables the metrics.
+ */
+public final class ExecutionMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(ExecutionMetrics.class.getName());
+
+    public static final String ENABLED_PROPERTY = "org.bonitasoft.connectors.database.metrics.enabled";
+
+    private static final ConnectorMetrics METRICS = load();
+
+    private final ConnectorMetrics metrics;
+
+    private final String definitionId;
+
+    private final String fingerprint;
+
+    ExecutionMetrics(final ConnectorMetrics metrics, final String definitionId, final String fingerprint) {
+        this.metrics = metrics;
+        this.definitionId = definitionId != null ? definitionId : "unknown";
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param definitionId id of the connector definition, such as <code>database-mysql</code>
+     * @param script the analysis of the script run by the connector, holding its fingerprint
+     */
+    public static ExecutionMetrics of(final String definitionId, final ParsedScript script) {
+        return new ExecutionMetrics(METRICS, definitionId, METRICS != null ? script.getFingerprint() : null);
+    }
+
+    /**
+     * @return metrics recording nothing, for code running outside of a connector execution
+     */
+    public static ExecutionMetrics disabled() {
+        return new ExecutionMetrics(null, null, null);
+    }
+
+    /**
+     * @return the loaded implementation, null when the metrics are disabled
+     */
+    public static ConnectorMetrics getMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * @return false when the metrics are disabled: callers can skip the measures that have a cost of their own
+     */
+    public boolean isEnabled() {
+        return metrics != null;
+    }
+
+    /**
+     * Records the time elapsed since start, a value of {@link System#nanoTime()}.
+     */
+    public void time(final ConnectorMetrics.Phase phase, final long start) {
+        record(phase, System.nanoTime() - start);
+    }
+
+    public void record(final ConnectorMetrics.Phase phase, final long nanos) {
+        if (metrics != null) {
+            metrics.recordTime(phase, definitionId, fingerprint, nanos);
+        }
+    }
+
+    public void count(final ConnectorMetrics.Counter counter, final long amount) {
+        if (metrics != null) {
+            metrics.recordCount(counter, definitionId, fingerprint, amount);
+        }
+    }
+
+    private static ConnectorMetrics load() {
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+            return null;
+        }
+        try {
+            final Iterator<ConnectorMetrics> providers = ServiceLoader
+                    .load(ConnectorMetrics.class, ConnectorMetrics.class.getClassLoader()).iterator();
+            if (providers.hasNext()) {
+                final ConnectorMetrics metrics = providers.next();
+                LOGGER.info("Connector metrics recorded by " + metrics.getClass().getName());
+                return metrics;
+            }
+        } catch (final ServiceConfigurationError e) {
+            LOGGER.log(Level.WARNING, "Unable to load the connector metrics, using the default ones", e);
+        }
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        MetricsExporter.register(metrics);
+        return metrics;
+    }
+
+}
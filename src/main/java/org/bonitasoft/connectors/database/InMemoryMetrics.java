@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link ConnectorMetrics}: keeps, for each measure and tags, the count, total and maximum of the recorded
+ * values. Distinct fingerprints are limited to {@value #MAX_FINGERPRINTS}; the next ones are recorded under the
+ * <code>other</code> fingerprint, so that scripts built with inlined values do not make the metrics grow forever.
+ */
+public class InMemoryMetrics implements ConnectorMetrics {
+
+    static final int MAX_FINGERPRINTS = 1000;
+
+    static final String OTHER = "other";
+
+    private final Map<String, Statistic> statistics = new ConcurrentHashMap<>();
+
+    private final Set<String> fingerprints = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Count, total and maximum of the values of a series.
+     */
+    public static final class Statistic {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void add(final long value) {
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return sum of the values, in nanoseconds for phases
+         */
+        public long getTotal() {
+            return total.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+    }
+
+    @Override
+    public void recordTime(final Phase phase, final String definitionId, final String fingerprint,
+            final long nanos) {
+        statistic(phase.name().toLowerCase(Locale.ROOT), definitionId, fingerprint).add(nanos);
+    }
+
+    @Override
+    public void recordCount(final Counter counter, final String definitionId, final String fingerprint,
+            final long amount) {
+        statistic(counter.name().toLowerCase(Locale.ROOT), definitionId, fingerprint).add(amount);
+    }
+
+    /**
+     * @return the series by name, <code>measure{definition=id,query=fingerprint}</code>, sorted
+     */
+    public Map<String, Statistic> getStatistics() {
+        return new TreeMap<>(statistics);
+    }
+
+    public void reset() {
+        statistics.clear();
+        fingerprints.clear();
+    }
+
+    private Statistic statistic(final String measure, final String definitionId, final String fingerprint) {
+        final String name = name(measure, definitionId, tracked(fingerprint));
+        final Statistic statistic = statistics.get(name);
+        if (statistic != null) {
+            return statistic;
+        }
+        return statistics.computeIfAbsent(name, key -> new Statistic());
+    }
+
+    /**
+     * @return the fingerprint, or {@value #OTHER} once {@value #MAX_FINGERPRINTS} other ones are tracked
+     */
+    private String tracked(final String fingerprint) {
+        if (fingerprints.contains(fingerprint)) {
+            return fingerprint;
+        }
+        if (fingerprints.size() >= MAX_FINGERPRINTS) {
+            return OTHER;
+        }
+        fingerprints.add(fingerprint);
+        return fingerprint;
+    }
+
+    private static String name(final String measure, final String definitionId, final String fingerprint) {
+        return measure + "{definition=" + definitionId + ",query=" + fingerprint + "}";
+    }
+
+}
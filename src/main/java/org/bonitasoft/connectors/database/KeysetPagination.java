@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.bonitasoft.connectors.database.result.RowCodec;
+import org.bonitasoft.engine.connector.ConnectorException;
+
+/**
+ * Keyset pagination of a query: a page is made of the rows following the key of the last row of the previous page, in
+ * key order. Unlike <code>OFFSET</code>, reading a page costs the same whatever its position, as long as the key
+ * columns are indexed.
+ * <p>
+ * The key columns must identify a row and never be null. The key of the last row is carried from one execution to the
+ * next by an opaque continuation token, which also holds a fingerprint of the query so that it can't be used with
+ * another one. The token is decoded without Java deserialization.
+ */
+public class KeysetPagination {
+
+    private static final Pattern COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_$#]*|\"[^\"]+\"");
+
+    private static final byte TOKEN_VERSION = 1;
+
+    private final List<String> keyColumns;
+
+    private final int pageSize;
+
+    private final Dialect dialect;
+
+    public KeysetPagination(final List<String> keyColumns, final int pageSize, final Dialect dialect) {
+        for (final String keyColumn : keyColumns) {
+            if (!isValidColumn(keyColumn)) {
+                throw new IllegalArgumentException("Invalid key column name: " + keyColumn);
+            }
+        }
+        this.keyColumns = new ArrayList<>(keyColumns);
+        this.pageSize = pageSize;
+        this.dialect = dialect;
+    }
+
+    /**
+     * @return whether the name is a plain or double-quoted column name, which can be inserted in the page query
+     */
+    public static boolean isValidColumn(final String name) {
+        return name != null && COLUMN.matcher(name).matches();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Builds the query of a page. It fetches one row more than the page size, to tell whether there is a next page.
+     *
+     * @param sql the query to paginate, without <code>ORDER BY</code> clause
+     * @param values the values bound to the placeholders of the query
+     * @param continuationToken the token returned with the previous page, null for the first page
+     */
+    public ParameterizedSql pageQuery(final String sql, final List<Object> values, final String continuationToken)
+            throws ConnectorException {
+        final StringBuilder select = new StringBuilder("SELECT * FROM (").append(stripTerminator(sql))
+                .append("\n) keyset_page");
+        final List<Object> pageValues = new ArrayList<>(values);
+        if (continuationToken != null) {
+            final List<Object> lastKey = decode(sql, continuationToken);
+            select.append(" WHERE ");
+            for (int i = 0; i < keyColumns.size(); i++) {
+                if (i > 0) {
+                    select.append(" OR ");
+                }
+                select.append('(');
+                for (int j = 0; j < i; j++) {
+                    select.append(keyColumns.get(j)).append(" = ? AND ");
+                    pageValues.add(lastKey.get(j));
+                }
+                select.append(keyColumns.get(i)).append(" > ?)");
+                pageValues.add(lastKey.get(i));
+            }
+        }
+        select.append(" ORDER BY ").append(String.join(", ", keyColumns));
+        return ParameterizedSql.of(dialect.limit(select.toString(), pageSize + 1), pageValues);
+    }
+
+    private static String stripTerminator(final String sql) {
+        int end = sql.length();
+        while (end > 0 && (Character.isWhitespace(sql.charAt(end - 1)) || sql.charAt(end - 1) == ';')) {
+            end--;
+        }
+        return sql.substring(0, end);
+    }
+
+    /**
+     * @return the 0-based indexes of the key columns in the rows of the page
+     * @throws ConnectorException when a key column is not part of the result
+     */
+    public int[] getKeyIndexes(final ResultSetMetaData metaData) throws SQLException, ConnectorException {
+        final int[] indexes = new int[keyColumns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = indexOf(metaData, keyColumns.get(i));
+        }
+        return indexes;
+    }
+
+    private static int indexOf(final ResultSetMetaData metaData, final String keyColumn)
+            throws SQLException, ConnectorException {
+        final boolean quoted = keyColumn.startsWith("\"");
+        final String name = quoted ? keyColumn.substring(1, keyColumn.length() - 1) : keyColumn;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            final String label = metaData.getColumnLabel(i);
+            if (quoted ? label.equals(name) : label.equalsIgnoreCase(name)) {
+                return i - 1;
+            }
+        }
+        throw new ConnectorException("Key column " + keyColumn + " is not part of the query result");
+    }
+
+    /**
+     * @param sql the query given to {@link #pageQuery(String, List, String)}
+     * @param lastKey the key values of the last row of the page
+     */
+    public String nextToken(final String sql, final List<Object> lastKey) throws ConnectorException {
+        for (int i = 0; i < lastKey.size(); i++) {
+            if (lastKey.get(i) == null) {
+                throw new ConnectorException("Key column " + keyColumns.get(i)
+                        + " is null on the last row of the page, keyset pagination needs non-null keys");
+            }
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TOKEN_VERSION);
+            out.writeInt(fingerprint(sql));
+            RowCodec.write(out, lastKey, false);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (final IllegalArgumentException e) {
+            throw new ConnectorException("Key column values can't be carried by a continuation token", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private List<Object> decode(final String sql, final String token) throws ConnectorException {
+        try {
+            final ByteBuffer in = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+            if (in.get() != TOKEN_VERSION) {
+                throw new ConnectorException("Unsupported continuation token version");
+            }
+            if (in.getInt() != fingerprint(sql)) {
+                throw new ConnectorException("Continuation token was not issued for this query and key columns");
+            }
+            final List<Object> lastKey = RowCodec.read(in, false);
+            if (lastKey.size() != keyColumns.size() || lastKey.contains(null) || in.hasRemaining()) {
+                throw new ConnectorException("Invalid continuation token");
+            }
+            return lastKey;
+        } catch (final IllegalArgumentException | BufferUnderflowException e) {
+            throw new ConnectorException("Invalid continuation token", e);
+        }
+    }
+
+    private int fingerprint(final String sql) {
+        return 31 * sql.hashCode() + keyColumns.hashCode();
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Publishes the {@link InMemoryMetrics} on the platform MBean server, under {@value #OBJECT_NAME} with an
+ * <code>id</code> property per class loader of the connector, so that the connectors of several processes publish
+ * their own metrics side by side. The <code>{@value #OBJECT_NAME},*</code> pattern lists them all. Each series gives
+ * three read-only attributes, <code>series.count</code>, <code>series.total</code> and <code>series.max</code>; the
+ * <code>reset</code> operation clears them.
+ */
+public class MetricsExporter implements DynamicMBean {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsExporter.class.getName());
+
+    public static final String OBJECT_NAME = "org.bonitasoft.connectors.database:type=Metrics";
+
+    private final InMemoryMetrics metrics;
+
+    MetricsExporter(final InMemoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the name of the metrics of the class loader of this class
+     */
+    static ObjectName objectName() throws MalformedObjectNameException {
+        return new ObjectName(OBJECT_NAME + ",id="
+                + Integer.toHexString(System.identityHashCode(MetricsExporter.class.getClassLoader())));
+    }
+
+    /**
+     * Registers the metrics, replacing the ones previously registered by the same class loader.
+     */
+    static void register(final InMemoryMetrics metrics) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = objectName();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new MetricsExporter(metrics), name);
+        } catch (final JMException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to register the connector metrics in JMX", e);
+        }
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final int dot = attribute.lastIndexOf('.');
+        final InMemoryMetrics.Statistic statistic = dot < 0 ? null
+                : metrics.getStatistics().get(attribute.substring(0, dot));
+        if (statistic == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        switch (attribute.substring(dot + 1)) {
+            case "count":
+                return statistic.getCount();
+            case "total":
+                return statistic.getTotal();
+            case "max":
+                return statistic.getMax();
+            default:
+                throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final AttributeList list = new AttributeList();
+        for (final String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (final AttributeNotFoundException e) {
+                // skipped, as specified by DynamicMBean
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature)
+            throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            metrics.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (final Map.Entry<String, InMemoryMetrics.Statistic> series : metrics.getStatistics().entrySet()) {
+            for (final String value : new String[] { "count", "total", "max" }) {
+                attributes.add(new MBeanAttributeInfo(series.getKey() + "." + value, "long", value + " of "
+                        + series.getKey(), true, false, false));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "Metrics of the database connectors",
+                attributes.toArray(new MBeanAttributeInfo[0]), null,
+                new MBeanOperationInfo[] { new MBeanOperationInfo("reset", "Clears the metrics", null, "void",
+                        MBeanOperationInfo.ACTION) },
+                null);
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bonitasoft.engine.connector.ConnectorException;
+
+/**
+ * Executes groups of independent commands concurrently, one connection per worker: each worker takes the next group
+ * not yet executed and sends its commands as a batch on its own connection, without committing. Once all the groups
+ * are executed, every connection is committed; when a group fails, the remaining groups are skipped and every
+ * connection is rolled back.
+ * <p>
+ * Workers run on virtual threads when the JVM provides them, on platform threads otherwise. The commits of the
+ * connections are not atomic: a failure while committing leaves the connections committed before it committed.
+ */
+public final class ParallelBatch {
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelBatch.class.getName());
+
+    private ParallelBatch() {
+    }
+
+    /**
+     * @param databases the connections of the workers, the groups run with at most this parallelism
+     * @param groups the groups of commands, see {@link CommandGroups}
+     * @param batchSize number of commands sent to the database at once within a group, 0 to send each group at once
+     * @return the result of each group, in the order of the groups
+     */
+    public static List<BatchResult> execute(final List<Database> databases, final List<List<String>> groups,
+            final int batchSize) throws ConnectorException {
+        final BatchResult[] results = new BatchResult[groups.size()];
+        final AtomicInteger nextGroup = new AtomicInteger();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final int workers = Math.min(databases.size(), groups.size());
+        final ExecutorService executor = newExecutor(workers);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                final Database database = databases.get(i);
+                futures.add(executor.submit(() -> {
+                    int group;
+                    while (failure.get() == null && (group = nextGroup.getAndIncrement()) < groups.size()) {
+                        try {
+                            final List<String> commands = groups.get(group);
+                            results[group] = database.executeBatch(commands,
+                                    batchSize > 0 ? batchSize : commands.size(), 0, false);
+                        } catch (final SQLException | ConnectorException | RuntimeException e) {
+                            failure.compareAndSet(null, new ConnectorException("Group " + (group + 1) + " failed", e));
+                        }
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (final ExecutionException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null) {
+            rollback(databases.subList(0, workers));
+            throw failure.get() instanceof ConnectorException ? (ConnectorException) failure.get()
+                    : new ConnectorException(failure.get());
+        }
+        commit(databases.subList(0, workers));
+        for (final BatchResult result : results) {
+            result.committed();
+        }
+        return Arrays.asList(results);
+    }
+
+    private static void commit(final List<Database> databases) throws ConnectorException {
+        for (int i = 0; i < databases.size(); i++) {
+            try {
+                databases.get(i).commit();
+            } catch (final SQLException e) {
+                rollback(databases.subList(i, databases.size()));
+                throw new ConnectorException("Commit failed, " + i + " of " + databases.size()
+                        + " connections were committed", e);
+            }
+        }
+    }
+
+    private static void rollback(final List<Database> databases) {
+        for (final Database database : databases) {
+            try {
+                database.rollback();
+            } catch (final SQLException e) {
+                LOGGER.log(Level.WARNING, "Rollback failed", e);
+            }
+        }
+    }
+
+    /**
+     * Java 21 virtual threads are looked up by reflection, as the connector is built for Java 11.
+     */
+    static ExecutorService newExecutor(final int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            final AtomicInteger count = new AtomicInteger();
+            final ThreadFactory factory = runnable -> {
+                final Thread thread = new Thread(runnable, "bonita-db-batch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(threads, factory);
+        }
+    }
+
+}
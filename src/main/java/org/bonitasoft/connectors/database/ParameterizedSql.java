@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SQL statement and the values bound to its <code>?</code> placeholders.
+ * <p>
+ * Parameters are either a {@link List} of values, bound in order to <code>?</code> placeholders, or a {@link Map} of
+ * values bound to <code>:name</code> placeholders, which are replaced by <code>?</code> in {@link #getSql()}.
+ */
+public class ParameterizedSql {
+
+    private final String sql;
+
+    private final List<Object> values;
+
+    private ParameterizedSql(final String sql, final List<Object> values) {
+        this.sql = sql;
+        this.values = values;
+    }
+
+    /**
+     * @param parameters a {@link List} of positional values or a {@link Map} of named values
+     * @throws IllegalArgumentException when parameters are of another type or a named parameter has no value
+     */
+    public static ParameterizedSql of(final String script, final Object parameters) {
+        if (parameters instanceof List) {
+            return new ParameterizedSql(script, Collections.unmodifiableList((List<?>) parameters));
+        }
+        if (parameters instanceof Map) {
+            return named(script, (Map<?, ?>) parameters);
+        }
+        throw new IllegalArgumentException("Parameters must be a list of values or a map of named values");
+    }
+
+    public static boolean isSupported(final Object parameters) {
+        return parameters == null || parameters instanceof List || parameters instanceof Map;
+    }
+
+    private static ParameterizedSql named(final String script, final Map<?, ?> parameters) {
+        final StringBuilder sql = new StringBuilder(script.length());
+        final List<Object> values = new ArrayList<>();
+        final int length = script.length();
+        int i = 0;
+        while (i < length) {
+            final char c = script.charAt(i);
+            if (c == '\'' || c == '"') {
+                final int end = skipQuoted(script, i, c);
+                sql.append(script, i, end);
+                i = end;
+            } else if (c == '-' && i + 1 < length && script.charAt(i + 1) == '-') {
+                final int end = script.indexOf('\n', i);
+                final int stop = end < 0 ? length : end;
+                sql.append(script, i, stop);
+                i = stop;
+            } else if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                final int end = script.indexOf("*/", i + 2);
+                final int stop = end < 0 ? length : end + 2;
+                sql.append(script, i, stop);
+                i = stop;
+            } else if (c == ':' && i + 1 < length && script.charAt(i + 1) == ':') {
+                sql.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(script.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < length && Character.isJavaIdentifierPart(script.charAt(end))) {
+                    end++;
+                }
+                final String name = script.substring(i + 1, end);
+                if (!parameters.containsKey(name)) {
+                    throw new IllegalArgumentException("No value given for parameter :" + name);
+                }
+                values.add(parameters.get(name));
+                sql.append('?');
+                i = end;
+            } else {
+                sql.append(c);
+                i++;
+            }
+        }
+        return new ParameterizedSql(sql.toString(), Collections.unmodifiableList(values));
+    }
+
+    private static int skipQuoted(final String script, final int start, final char quote) {
+        int i = start + 1;
+        while (i < script.length()) {
+            if (script.charAt(i) == quote) {
+                if (i + 1 < script.length() && script.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return script.length();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    public void bind(final PreparedStatement statement) throws SQLException {
+        statement.clearParameters();
+        for (int i = 0; i < values.size(); i++) {
+            bind(statement, i + 1, values.get(i));
+        }
+    }
+
+    static void bind(final PreparedStatement statement, final int index, final Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.NULL);
+        } else if (value instanceof Date && !(value instanceof java.sql.Date || value instanceof java.sql.Time
+                || value instanceof Timestamp)) {
+            statement.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+        } else {
+            statement.setObject(index, value);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the analysis of a connector script: whether it is a query, a command, or a batch of commands split on a
+ * separator. A command may still produce a result set, see {@link StatementClassifier}. Instances are immutable and
+ * shared by the connectors through {@link ScriptCache}.
+ */
+public class ParsedScript {
+
+    public enum Kind {
+        QUERY, COMMAND, BATCH
+    }
+
+    private final Kind kind;
+
+    private final SqlScript commands;
+
+    private final String fingerprint;
+
+    private ParsedScript(final Kind kind, final SqlScript commands, final String fingerprint) {
+        this.kind = kind;
+        this.commands = commands;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param separator the batch separator, null when the script is a single statement
+     */
+    public static ParsedScript parse(final String script, final String separator) {
+        final String fingerprint = QueryFingerprint.of(script);
+        if (isBatch(separator)) {
+            return new ParsedScript(Kind.BATCH, ScriptSplitter.split(script, separator), fingerprint);
+        }
+        return new ParsedScript(StatementClassifier.isQuery(script) ? Kind.QUERY : Kind.COMMAND, null, fingerprint);
+    }
+
+    /**
+     * @return true when a script given with this separator is a batch, even an empty separator that keeps the script
+     *         as a single command
+     */
+    public static boolean isBatch(final String separator) {
+        return separator != null;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isQuery() {
+        return kind == Kind.QUERY;
+    }
+
+    /**
+     * @return the {@link QueryFingerprint} of the script, computed once for all the executions sharing this analysis
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the commands of a batch script, an empty list otherwise
+     */
+    public List<String> getCommands() {
+        return commands != null ? commands.getCommands() : Collections.<String> emptyList();
+    }
+
+    /**
+     * @return approximate memory footprint in bytes of the script and of its analysis
+     */
+    long getWeight(final String script) {
+        return 80L + 2L * script.length() + (commands != null ? 8L * commands.size() : 0L);
+    }
+
+}
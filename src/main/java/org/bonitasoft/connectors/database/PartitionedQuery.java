@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bonitasoft.connectors.database.result.RowMapper;
+import org.bonitasoft.engine.connector.ConnectorException;
+
+/**
+ * Splits a query into sub-queries over consecutive ranges of a numeric or date column, runs them concurrently on
+ * separate connections, and merges their rows.
+ * <p>
+ * The range is given by the minimum and maximum of the column in the result of the query; rows where the column is
+ * null belong to the first partition. With an ordered merge, each partition is ordered by the column and partitions
+ * are merged in range order, so the rows come ordered by the partition column; rows where the column is null then
+ * get a partition of their own and come first, whatever the null ordering of the database. Otherwise rows come as
+ * soon as a partition produces them. Partitions hand their rows over through bounded queues: a partition that is not
+ * consumed fast enough waits, which bounds the rows held in memory to {@value #QUEUE_CAPACITY} per partition.
+ */
+public class PartitionedQuery {
+
+    static final int QUEUE_CAPACITY = 1024;
+
+    private static final long OFFER_TIMEOUT = 100;
+
+    private static final Object END = new Object();
+
+    private final String column;
+
+    private final boolean ordered;
+
+    /**
+     * Receives the merged rows.
+     */
+    @FunctionalInterface
+    public interface RowSink {
+
+        /**
+         * @return false to stop the query, e.g. when the row does not fit in the result
+         */
+        boolean accept(List<Object> row) throws ConnectorException;
+
+    }
+
+    public PartitionedQuery(final String column, final boolean ordered) {
+        if (!KeysetPagination.isValidColumn(column)) {
+            throw new IllegalArgumentException("Invalid partition column name: " + column);
+        }
+        this.column = column;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Computes the sub-queries, running the range query on the given database.
+     *
+     * @return at most the given number of sub-queries, plus one for the null values with an ordered merge, a single
+     *         one when the range is empty or can't be split
+     */
+    public List<ParameterizedSql> partition(final Database database, final String sql, final List<Object> values,
+            final int partitions) throws SQLException, ConnectorException {
+        final String source = "FROM (" + sql + "\n) partition_src";
+        final Object min;
+        final Object max;
+        final boolean nulls;
+        try {
+            final String nullCount = ordered ? ", COUNT(*) - COUNT(" + column + ")" : "";
+            final ResultSet range = database.select(ParameterizedSql.of(
+                    "SELECT MIN(" + column + "), MAX(" + column + ")" + nullCount + " " + source, values),
+                    ResultSet.TYPE_FORWARD_ONLY, 0);
+            range.next();
+            // reads vendor types, such as oracle.sql.TIMESTAMP, as their standard class
+            final RowMapper rowMapper = RowMapper.of(range.getMetaData());
+            min = rowMapper.getValue(range, 1);
+            max = rowMapper.getValue(range, 2);
+            nulls = ordered && ((Number) rowMapper.getValue(range, 3)).longValue() > 0;
+        } finally {
+            database.closeCursor();
+        }
+        final List<Object> bounds = split(min, max, partitions);
+        final List<ParameterizedSql> queries = new ArrayList<>();
+        final String order = ordered ? " ORDER BY " + column : "";
+        if (bounds.size() < 2) {
+            queries.add(ParameterizedSql.of("SELECT * " + source + order, values));
+            return queries;
+        }
+        if (nulls) {
+            queries.add(ParameterizedSql.of("SELECT * " + source + " WHERE " + column + " IS NULL", values));
+        }
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            final boolean last = i + 2 == bounds.size();
+            String predicate = column + " >= ? AND " + column + (last ? " <= ?" : " < ?");
+            if (i == 0 && !ordered) {
+                predicate = column + " IS NULL OR (" + predicate + ")";
+            }
+            final List<Object> partitionValues = new ArrayList<>(values);
+            partitionValues.add(bounds.get(i));
+            partitionValues.add(bounds.get(i + 1));
+            queries.add(ParameterizedSql.of("SELECT * " + source + " WHERE " + predicate + order, partitionValues));
+        }
+        return queries;
+    }
+
+    /**
+     * @return the distinct bounds of the partitions, of the class of min and max, from min to max
+     */
+    static List<Object> split(final Object min, final Object max, final int partitions) throws ConnectorException {
+        final List<Object> bounds = new ArrayList<>(partitions + 1);
+        if (min == null || max == null) {
+            return bounds;
+        }
+        final BigDecimal low = toDecimal(min);
+        final BigDecimal high = toDecimal(max);
+        final boolean integral = !(min instanceof BigDecimal || min instanceof Double || min instanceof Float);
+        final BigDecimal step = high.subtract(low).divide(BigDecimal.valueOf(partitions), 10, RoundingMode.FLOOR);
+        bounds.add(min);
+        BigDecimal previous = low;
+        for (int i = 1; i < partitions; i++) {
+            BigDecimal bound = low.add(step.multiply(BigDecimal.valueOf(i)));
+            if (integral) {
+                bound = bound.setScale(0, RoundingMode.FLOOR);
+            }
+            if (bound.compareTo(previous) > 0 && bound.compareTo(high) < 0) {
+                bounds.add(fromDecimal(bound, min));
+                previous = bound;
+            }
+        }
+        if (high.compareTo(low) > 0) {
+            bounds.add(max);
+        } else {
+            bounds.add(min);
+        }
+        return bounds;
+    }
+
+    private static BigDecimal toDecimal(final Object value) throws ConnectorException {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof java.util.Date) {
+            return BigDecimal.valueOf(((java.util.Date) value).getTime());
+        }
+        throw new ConnectorException("Partition column must be numeric or a date, not " + value.getClass().getName());
+    }
+
+    private static Object fromDecimal(final BigDecimal value, final Object template) {
+        if (template instanceof Timestamp) {
+            return new Timestamp(value.longValue());
+        } else if (template instanceof java.sql.Time) {
+            return new java.sql.Time(value.longValue());
+        } else if (template instanceof java.util.Date) {
+            return new java.sql.Date(value.longValue());
+        } else if (template instanceof BigDecimal || template instanceof BigInteger) {
+            return value;
+        } else if (template instanceof Double || template instanceof Float) {
+            return value.doubleValue();
+        }
+        return value.longValue();
+    }
+
+    /**
+     * Runs each query on its own database and passes the merged rows to the sink, until all the queries are consumed
+     * or the sink stops them.
+     *
+     * @param databases one database per query
+     * @param maxRows maximum number of rows returned by each query, 0 for no limit
+     */
+    public void execute(final List<Database> databases, final List<ParameterizedSql> queries, final int maxRows,
+            final RowSink sink) throws ConnectorException {
+        final int partitions = queries.size();
+        final List<BlockingQueue<Object>> queues = new ArrayList<>(partitions);
+        final BlockingQueue<Object> shared = ordered ? null : new ArrayBlockingQueue<>(QUEUE_CAPACITY * partitions);
+        for (int i = 0; i < partitions; i++) {
+            queues.add(ordered ? new ArrayBlockingQueue<>(QUEUE_CAPACITY) : shared);
+        }
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final ExecutorService executor = ParallelBatch.newExecutor(partitions);
+        final List<Future<?>> futures = new ArrayList<>(partitions);
+        try {
+            for (int i = 0; i < partitions; i++) {
+                final Database database = databases.get(i);
+                final ParameterizedSql query = queries.get(i);
+                final BlockingQueue<Object> queue = queues.get(i);
+                futures.add(executor.submit(() -> produce(database, query, maxRows, queue, stopped)));
+            }
+            if (ordered) {
+                for (final BlockingQueue<Object> queue : queues) {
+                    if (!consume(queue, 1, sink)) {
+                        break;
+                    }
+                }
+            } else {
+                consume(shared, partitions, sink);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectorException("Interrupted while merging partitions", e);
+        } finally {
+            stopped.set(true);
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    // failures are handed over through the queues
+                }
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return false when the sink stopped the query
+     */
+    private static boolean consume(final BlockingQueue<Object> queue, final int producers, final RowSink sink)
+            throws InterruptedException, ConnectorException {
+        int running = producers;
+        while (running > 0) {
+            final Object item = queue.take();
+            if (item == END) {
+                running--;
+            } else if (item instanceof Failure) {
+                throw new ConnectorException("Partition query failed", ((Failure) item).cause);
+            } else {
+                @SuppressWarnings("unchecked")
+                final List<Object> row = (List<Object>) item;
+                if (!sink.accept(row)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void produce(final Database database, final ParameterizedSql query, final int maxRows,
+            final BlockingQueue<Object> queue, final AtomicBoolean stopped) {
+        try {
+            final ResultSet resultSet = database.select(query, ResultSet.TYPE_FORWARD_ONLY, maxRows);
+            final RowMapper rowMapper = RowMapper.of(resultSet.getMetaData());
+            while (!stopped.get() && resultSet.next()) {
+                if (!offer(queue, rowMapper.mapRow(resultSet), stopped)) {
+                    return;
+                }
+            }
+            offer(queue, END, stopped);
+        } catch (final Exception e) {
+            try {
+                offer(queue, new Failure(e), stopped);
+            } catch (final InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            try {
+                database.closeCursor();
+            } catch (final SQLException e) {
+                // the connection is released right after
+            }
+        }
+    }
+
+    /**
+     * Waits for room in the queue, unless the merge is stopped.
+     *
+     * @return false when the merge is stopped
+     */
+    private static boolean offer(final BlockingQueue<Object> queue, final Object item, final AtomicBoolean stopped)
+            throws InterruptedException {
+        while (!queue.offer(item, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            if (stopped.get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Failure {
+
+        private final Exception cause;
+
+        private Failure(final Exception cause) {
+            this.cause = cause;
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Properties;
+
+/**
+ * Settings of the {@link ConnectionPool}s. The pool is shared by the whole engine node, so it is configured with JVM
+ * system properties (prefixed with {@value #PREFIX}) rather than with connector inputs.
+ */
+public class PoolConfiguration {
+
+    public static final String PREFIX = "org.bonitasoft.connectors.database.pool.";
+
+    public static final String ENABLED = "enabled";
+    public static final String MIN_IDLE = "minIdle";
+    public static final String MAX_SIZE = "maxSize";
+    public static final String IDLE_TIMEOUT = "idleTimeout";
+    public static final String MAX_LIFETIME = "maxLifetime";
+    public static final String VALIDATION_TIMEOUT = "validationTimeout";
+    public static final String BORROW_TIMEOUT = "borrowTimeout";
+    public static final String HOUSEKEEPING_PERIOD = "housekeepingPeriod";
+    public static final String STATEMENT_CACHE_SIZE = "statementCacheSize";
+
+    private final boolean enabled;
+
+    private final int minIdle;
+
+    private final int maxSize;
+
+    private final long idleTimeout;
+
+    private final long maxLifetime;
+
+    private final int validationTimeout;
+
+    private final long borrowTimeout;
+
+    private final long housekeepingPeriod;
+
+    private final int statementCacheSize;
+
+    /**
+     * @param enabled when false, {@link Database} opens and closes a physical connection for each connector execution
+     * @param minIdle number of idle connections kept open per pool by the housekeeper
+     * @param maxSize maximum number of connections (idle and borrowed) per pool
+     * @param idleTimeout time in milliseconds after which an idle connection above minIdle is closed
+     * @param maxLifetime time in milliseconds after which a connection is closed, 0 to disable
+     * @param validationTimeout timeout in seconds of the {@link java.sql.Connection#isValid(int)} check on borrow
+     * @param borrowTimeout time in milliseconds to wait for a connection when the pool is exhausted
+     * @param housekeepingPeriod period in milliseconds of the idle eviction task
+     * @param statementCacheSize number of prepared statements cached per connection, 0 to disable the cache
+     */
+    public PoolConfiguration(final boolean enabled, final int minIdle, final int maxSize, final long idleTimeout,
+            final long maxLifetime, final int validationTimeout, final long borrowTimeout,
+            final long housekeepingPeriod, final int statementCacheSize) {
+        if (minIdle < 0 || maxSize < 1 || minIdle > maxSize) {
+            throw new IllegalArgumentException(
+                    "Invalid pool size: minIdle=" + minIdle + ", maxSize=" + maxSize);
+        }
+        this.enabled = enabled;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        this.validationTimeout = validationTimeout;
+        this.borrowTimeout = borrowTimeout;
+        this.housekeepingPeriod = housekeepingPeriod;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public static PoolConfiguration fromSystemProperties() {
+        return fromProperties(System.getProperties());
+    }
+
+    public static PoolConfiguration fromProperties(final Properties properties) {
+        return new PoolConfiguration(
+                Boolean.parseBoolean(properties.getProperty(PREFIX + ENABLED, "true")),
+                Integer.parseInt(properties.getProperty(PREFIX + MIN_IDLE, "0")),
+                Integer.parseInt(properties.getProperty(PREFIX + MAX_SIZE, "10")),
+                Long.parseLong(properties.getProperty(PREFIX + IDLE_TIMEOUT, "600000")),
+                Long.parseLong(properties.getProperty(PREFIX + MAX_LIFETIME, "1800000")),
+                Integer.parseInt(properties.getProperty(PREFIX + VALIDATION_TIMEOUT, "5")),
+                Long.parseLong(properties.getProperty(PREFIX + BORROW_TIMEOUT, "30000")),
+                Long.parseLong(properties.getProperty(PREFIX + HOUSEKEEPING_PERIOD, "30000")),
+                Integer.parseInt(properties.getProperty(PREFIX + STATEMENT_CACHE_SIZE, "20")));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public long getHousekeepingPeriod() {
+        return housekeepingPeriod;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool}, together with the timestamps used for eviction.
+ */
+public class PooledConnection {
+
+    private final ConnectionPool pool;
+
+    private final Connection connection;
+
+    private final long createdAt;
+
+    private volatile long lastUsedAt;
+
+    private final StatementCache statementCache;
+
+    PooledConnection(final ConnectionPool pool, final Connection connection, final int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        statementCache = statementCacheSize > 0 ? new StatementCache(connection, statementCacheSize) : null;
+        createdAt = System.currentTimeMillis();
+        lastUsedAt = createdAt;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public boolean isStatementCacheEnabled() {
+        return statementCache != null;
+    }
+
+    /**
+     * @return a statement from the statement cache of this connection, which must not be closed by the caller
+     */
+    public PreparedStatement prepareCachedStatement(final String sql, final int resultSetType) throws SQLException {
+        return statementCache.prepare(sql, resultSetType);
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    void touch() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    boolean isExpired(final long now, final long maxLifetime) {
+        return maxLifetime > 0 && now - createdAt >= maxLifetime;
+    }
+
+}
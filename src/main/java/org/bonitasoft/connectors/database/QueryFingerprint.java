@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+/**
+ * Identifies the shape of a query, so that the executions of a query with different literal values are grouped
+ * together: string and numeric literals are replaced with <code>?</code>, comments are removed, whitespace is
+ * collapsed and the text is upper-cased outside of quoted identifiers.
+ */
+public final class QueryFingerprint {
+
+    private QueryFingerprint() {
+    }
+
+    /**
+     * @return the normalized query
+     */
+    public static String normalize(final String sql) {
+        return normalize(sql, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the start of the normalized query, stopping once it holds at least maxLength characters
+     */
+    public static String normalize(final String sql, final int maxLength) {
+        if (sql == null) {
+            return "";
+        }
+        final int length = sql.length();
+        final StringBuilder normalized = new StringBuilder(Math.min(length, maxLength));
+        boolean space = false;
+        int i = 0;
+        while (i < length && normalized.length() < maxLength) {
+            final char c = sql.charAt(i);
+            final char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+            if (c == '-' && next == '-') {
+                final int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end;
+                space = true;
+            } else if (c == '/' && next == '*') {
+                final int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                space = true;
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+            } else {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                space = false;
+                if (c == '\'') {
+                    i = endOfQuoted(sql, i + 1, '\'');
+                    normalized.append('?');
+                } else if (c == '"' || c == '`') {
+                    final int end = endOfQuoted(sql, i + 1, c);
+                    normalized.append(sql, i, end);
+                    i = end;
+                } else if (Character.isDigit(c) && !isIdentifierPart(normalized)) {
+                    while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                        i++;
+                    }
+                    normalized.append('?');
+                } else {
+                    normalized.append(Character.toUpperCase(c));
+                    i++;
+                }
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @return a short hexadecimal hash of the normalized query
+     */
+    public static String of(final String sql) {
+        return String.format("%08x", normalize(sql).hashCode());
+    }
+
+    private static boolean isIdentifierPart(final StringBuilder normalized) {
+        if (normalized.length() == 0) {
+            return false;
+        }
+        final char last = normalized.charAt(normalized.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$' || last == '#';
+    }
+
+    private static int endOfQuoted(final String sql, final int from, final char quote) {
+        int i = from;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+}
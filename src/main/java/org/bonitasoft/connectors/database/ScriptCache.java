@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the {@link ParsedScript}s, keyed by the script and the separator, so that the connector
+ * instances of a process running the same script do not analyse and split it again.
+ * <p>
+ * The cache is bounded by the approximate memory footprint of its entries, set in bytes with the
+ * {@value #MAX_WEIGHT_PROPERTY} system property: least recently used entries are evicted first, and a script bigger
+ * than a quarter of the cache is parsed without being cached.
+ */
+public class ScriptCache {
+
+    public static final String MAX_WEIGHT_PROPERTY = "org.bonitasoft.connectors.database.scriptCache.maxWeight";
+
+    static final long DEFAULT_MAX_WEIGHT = 8L * 1024 * 1024;
+
+    private static final Map<Key, Entry> SCRIPTS = new LinkedHashMap<>(64, 0.75f, true);
+
+    private static final AtomicLong HITS = new AtomicLong();
+
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private static long maxWeight = Long.getLong(MAX_WEIGHT_PROPERTY, DEFAULT_MAX_WEIGHT);
+
+    private static long weight;
+
+    private ScriptCache() {
+    }
+
+    public static ParsedScript parse(final String script, final String separator) {
+        final Key key = new Key(script, separator);
+        synchronized (SCRIPTS) {
+            final Entry cached = SCRIPTS.get(key);
+            if (cached != null) {
+                HITS.incrementAndGet();
+                return cached.parsedScript;
+            }
+        }
+        MISSES.incrementAndGet();
+        final ParsedScript parsedScript = ParsedScript.parse(script, separator);
+        final long entryWeight = parsedScript.getWeight(script);
+        synchronized (SCRIPTS) {
+            if (entryWeight <= maxWeight / 4) {
+                final Entry previous = SCRIPTS.put(key, new Entry(parsedScript, entryWeight));
+                weight += entryWeight - (previous != null ? previous.weight : 0);
+                evict();
+            }
+        }
+        return parsedScript;
+    }
+
+    private static void evict() {
+        final Iterator<Entry> eldest = SCRIPTS.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    static void setMaxWeight(final long maxWeight) {
+        synchronized (SCRIPTS) {
+            ScriptCache.maxWeight = maxWeight;
+            evict();
+        }
+    }
+
+    public static void clear() {
+        synchronized (SCRIPTS) {
+            SCRIPTS.clear();
+            weight = 0;
+        }
+    }
+
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    public static int size() {
+        synchronized (SCRIPTS) {
+            return SCRIPTS.size();
+        }
+    }
+
+    public static long getWeight() {
+        synchronized (SCRIPTS) {
+            return weight;
+        }
+    }
+
+    private static final class Entry {
+
+        private final ParsedScript parsedScript;
+
+        private final long weight;
+
+        private Entry(final ParsedScript parsedScript, final long weight) {
+            this.parsedScript = parsedScript;
+            this.weight = weight;
+        }
+
+    }
+
+    private static final class Key {
+
+        private final String script;
+
+        private final String separator;
+
+        private Key(final String script, final String separator) {
+            this.script = script;
+            this.separator = separator;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return script.equals(other.script) && Objects.equals(separator, other.separator);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * script.hashCode() + Objects.hashCode(separator);
+        }
+
+    }
+
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Arrays;
+
+/**
+ * Splits a batch script into commands in a single pass, without copying it.
+ * <p>
+ * The whole separator string delimits commands, except inside string literals, quoted identifiers, comments and
+ * PostgreSQL dollar-quoted strings. A word separator such as <code>GO</code> only matches a whole word. With the
+ * <code>;</code> separator, semicolons inside procedural blocks (<code>BEGIN ... END</code>, <code>DECLARE</code>
+ * sections and the declarations of Oracle routines and packages) do not end the command either. A block only starts
+ * with a <code>BEGIN</code> at the start of a statement, and a <code>DECLARE</code> section only holds the
+ * semicolons of its declarations once the <code>BEGIN</code> that follows them is found, so that neither a column
+ * named <code>begin</code> nor a T-SQL variable declaration swallows the rest of the script. An empty separator
+ * leaves the whole script as a single command.
+ * <p>
+ * Commands are trimmed, and the ones holding nothing but whitespace and comments are skipped.
+ */
+public final class ScriptSplitter {
+
+    /**
+     * Words starting a statement that is not a declaration, ending a DECLARE section that has no BEGIN.
+     */
+    private static final String[] STATEMENT_KEYWORDS = { "SELECT", "INSERT", "UPDATE", "DELETE", "MERGE", "WITH",
+            "SET", "CREATE", "ALTER", "DROP", "TRUNCATE", "GRANT", "REVOKE", "EXEC", "EXECUTE", "CALL", "PRINT", "IF",
+            "WHILE", "DECLARE", "COMMIT", "ROLLBACK", "RETURN", "USE", "VALUES" };
+
+    private final String script;
+
+    private final String separator;
+
+    private final boolean splitting;
+
+    private final boolean wordSeparator;
+
+    private final boolean trackBlocks;
+
+    private final int length;
+
+    private int[] bounds = new int[16];
+
+    private int count;
+
+    /**
+     * Open blocks, innermost last: true while the block is a routine header whose <code>BEGIN</code> is still to
+     * come, so that this <code>BEGIN</code> does not open another block.
+     */
+    private boolean[] blocks = new boolean[8];
+
+    private int depth;
+
+    private boolean statementStart = true;
+
+    private boolean creating;
+
+    private boolean routineHeader;
+
+    private boolean condition;
+
+    private boolean declaring;
+
+    private int declareCount;
+
+    private int declareCommandStart;
+
+    private int declareCodeStart;
+
+    private int commandStart;
+
+    private int codeStart = -1;
+
+    private int codeEnd;
+
+    private int words;
+
+    private ScriptSplitter(final String script, final String separator) {
+        this.script = script;
+        this.separator = separator;
+        length = script.length();
+        splitting = !separator.isEmpty();
+        wordSeparator = splitting && (isIdentifierPart(separator.charAt(0))
+                || isIdentifierPart(separator.charAt(separator.length() - 1)));
+        trackBlocks = ";".equals(separator);
+    }
+
+    public static SqlScript split(final String script, final String separator) {
+        if (separator == null) {
+            throw new IllegalArgumentException("Separator can't be null");
+        }
+        final ScriptSplitter splitter = new ScriptSplitter(script, separator);
+        splitter.run();
+        return new SqlScript(script, Arrays.copyOf(splitter.bounds, splitter.count * 2), splitter.count);
+    }
+
+    private void run() {
+        int i = 0;
+        while (i < length) {
+            final char c = script.charAt(i);
+            final int next = i + 1 < length ? script.charAt(i + 1) : -1;
+            if (c == '-' && next == '-') {
+                i = endOfLine(i + 2);
+            } else if (c == '/' && next == '*') {
+                i = endOfBlockComment(i + 2);
+            } else if (c == '\'' || c == '"' || c == '`') {
+                statementStart = false;
+                i = code(i, endOfQuoted(i + 1, c));
+            } else if (c == '$' && isDollarQuoteStart(i)) {
+                statementStart = false;
+                i = code(i, endOfDollarQuoted(i));
+            } else if (splitting && depth == 0 && isSeparatorAt(i)) {
+                endCommand(i);
+                i += separator.length();
+                commandStart = i;
+            } else if (isIdentifierStart(c)) {
+                int end = i + 1;
+                while (end < length && isIdentifierPart(script.charAt(end))) {
+                    end++;
+                }
+                if (trackBlocks) {
+                    end = word(i, end);
+                }
+                i = code(i, end);
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                if (trackBlocks) {
+                    punctuation(i, c);
+                }
+                i = code(i, i + 1);
+            }
+        }
+        endCommand(length);
+    }
+
+    private int code(final int start, final int end) {
+        if (codeStart < 0) {
+            codeStart = start;
+        }
+        codeEnd = end;
+        return end;
+    }
+
+    private void endCommand(final int end) {
+        if (codeStart >= 0) {
+            if (count * 2 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            // keep trailing comments of the command, but not the whitespace around it
+            int stop = end;
+            while (stop > codeEnd && Character.isWhitespace(script.charAt(stop - 1))) {
+                stop--;
+            }
+            int start = commandStart;
+            while (start < codeStart && Character.isWhitespace(script.charAt(start))) {
+                start++;
+            }
+            bounds[count * 2] = start;
+            bounds[count * 2 + 1] = stop;
+            count++;
+        }
+        codeStart = -1;
+        depth = 0;
+        statementStart = true;
+        creating = false;
+        routineHeader = false;
+        condition = false;
+        words = 0;
+    }
+
+    /**
+     * A semicolon inside a block and a label (<code>name:</code> or <code>&lt;&lt;name&gt;&gt;</code>) are followed
+     * by the start of a statement.
+     */
+    private void punctuation(final int i, final char c) {
+        statementStart = c == ';' || c == ':' || c == '>' && i > 0 && script.charAt(i - 1) == '>';
+        if (c == ';') {
+            // forward declaration of a routine, or end of a T-SQL condition without block
+            routineHeader = false;
+            condition = false;
+        }
+    }
+
+    /**
+     * Tracks the procedural blocks opened and closed by a word. Returns the end of the text consumed, which goes past
+     * the word for a block terminator such as <code>END CASE</code> or <code>END IF</code>.
+     */
+    private int word(final int start, final int end) {
+        final boolean statement = statementStart;
+        statementStart = false;
+        words++;
+        if (words == 1) {
+            creating = is(start, end, "CREATE");
+        }
+        final boolean begin = is(start, end, "BEGIN");
+        if (declaring && statement && depth == 0) {
+            if (begin && !isTransactionBegin(end)) {
+                confirmDeclare();
+            } else if (begin || isStatementKeyword(start, end)) {
+                // not a PL/SQL declaration section: keep the commands split at its semicolons
+                declaring = false;
+            }
+        }
+        if (creating && (is(start, end, "PROCEDURE") || is(start, end, "FUNCTION") || is(start, end, "TRIGGER")
+                || is(start, end, "PACKAGE") || is(start, end, "BODY"))
+                || statement && (depth > 0 || declaring)
+                        && (is(start, end, "PROCEDURE") || is(start, end, "FUNCTION"))) {
+            routineHeader = true;
+        } else if (is(start, end, "AS") || is(start, end, "IS")) {
+            creating = false;
+            if (routineHeader) {
+                routineHeader = false;
+                statementStart = true;
+                final int next = skipSpaces(end);
+                if (next < length && script.charAt(next) != '\'' && script.charAt(next) != '$') {
+                    // Oracle declaration section: semicolons until the BEGIN of the body are part of the routine
+                    open(true);
+                }
+            }
+        } else if (begin) {
+            if ((statement || routineHeader || condition) && !isTransactionBegin(end)) {
+                creating = false;
+                routineHeader = false;
+                condition = false;
+                statementStart = true;
+                if (depth > 0 && blocks[depth - 1]) {
+                    blocks[depth - 1] = false;
+                } else {
+                    open(false);
+                }
+            }
+        } else if (is(start, end, "DECLARE")) {
+            if ((statement || routineHeader) && depth == 0 && !declaring && isDeclarationSection(end)) {
+                declaring = true;
+                declareCount = count;
+                declareCommandStart = commandStart;
+                declareCodeStart = codeStart >= 0 ? codeStart : start;
+            }
+            routineHeader = false;
+            statementStart = true;
+        } else if (is(start, end, "CASE")) {
+            open(false);
+        } else if (is(start, end, "END")) {
+            final int next = skipSpaces(end);
+            final int nextEnd = endOfWord(next);
+            // IF and loops never open a block; END CASE closes the CASE statement, like a plain END
+            final boolean loop = is(next, nextEnd, "IF") || is(next, nextEnd, "LOOP") || is(next, nextEnd, "WHILE")
+                    || is(next, nextEnd, "REPEAT") || is(next, nextEnd, "FOR");
+            if (depth > 0 && !loop) {
+                depth--;
+            }
+            if (loop || is(next, nextEnd, "CASE")) {
+                return nextEnd;
+            }
+        } else if (statement && (is(start, end, "IF") || is(start, end, "WHILE"))) {
+            // a T-SQL condition is directly followed by its BEGIN
+            condition = true;
+        } else if (is(start, end, "THEN") || is(start, end, "ELSE") || is(start, end, "LOOP")
+                || is(start, end, "DO")) {
+            condition = false;
+            statementStart = true;
+        }
+        return end;
+    }
+
+    private void open(final boolean routine) {
+        if (depth == blocks.length) {
+            blocks = Arrays.copyOf(blocks, depth * 2);
+        }
+        blocks[depth++] = routine;
+    }
+
+    /**
+     * The BEGIN of a DECLARE section is found: the commands split since the DECLARE are one command again.
+     */
+    private void confirmDeclare() {
+        declaring = false;
+        count = declareCount;
+        commandStart = declareCommandStart;
+        codeStart = declareCodeStart;
+    }
+
+    /**
+     * @return false for a T-SQL variable or a cursor declaration, which have no BEGIN
+     */
+    private boolean isDeclarationSection(final int end) {
+        final int next = skipSpaces(end);
+        if (next >= length || script.charAt(next) == '@') {
+            return false;
+        }
+        final int second = skipSpaces(endOfWord(next));
+        final int secondEnd = endOfWord(second);
+        return !(is(second, secondEnd, "CURSOR") || is(second, secondEnd, "SCROLL") || is(second, secondEnd, "NO")
+                || is(second, secondEnd, "BINARY") || is(second, secondEnd, "INSENSITIVE")
+                || is(second, secondEnd, "ASENSITIVE"));
+    }
+
+    private boolean isStatementKeyword(final int start, final int end) {
+        for (final String keyword : STATEMENT_KEYWORDS) {
+            if (is(start, end, keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTransactionBegin(final int end) {
+        final int next = skipSpaces(end);
+        if (next >= length || script.startsWith(separator, next)) {
+            return true;
+        }
+        final int nextEnd = endOfWord(next);
+        return is(next, nextEnd, "TRANSACTION") || is(next, nextEnd, "WORK") || is(next, nextEnd, "TRAN")
+                || is(next, nextEnd, "DISTRIBUTED") || is(next, nextEnd, "ISOLATION") || is(next, nextEnd, "READ")
+                || is(next, nextEnd, "NOT") || is(next, nextEnd, "DEFERRABLE") || is(next, nextEnd, "DEFERRED")
+                || is(next, nextEnd, "IMMEDIATE") || is(next, nextEnd, "EXCLUSIVE");
+    }
+
+    private boolean isSeparatorAt(final int i) {
+        if (!script.regionMatches(wordSeparator, i, separator, 0, separator.length())) {
+            return false;
+        }
+        if (!wordSeparator) {
+            return true;
+        }
+        final int end = i + separator.length();
+        return (i == 0 || !isIdentifierPart(script.charAt(i - 1)))
+                && (end >= length || !isIdentifierPart(script.charAt(end)));
+    }
+
+    private boolean is(final int start, final int end, final String keyword) {
+        return end - start == keyword.length() && script.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    private int skipSpaces(final int from) {
+        int i = from;
+        while (i < length && Character.isWhitespace(script.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int endOfWord(final int from) {
+        int i = from;
+        while (i < length && isIdentifierPart(script.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int endOfLine(final int from) {
+        final int end = script.indexOf('\n', from);
+        return end < 0 ? length : end + 1;
+    }
+
+    private int endOfBlockComment(final int from) {
+        final int end = script.indexOf("*/", from);
+        return end < 0 ? length : end + 2;
+    }
+
+    private int endOfQuoted(final int from, final char quote) {
+        int i = from;
+        while (i < length) {
+            if (script.charAt(i) == quote) {
+                if (i + 1 < length && script.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    /**
+     * A dollar quote is <code>$$</code> or <code>$tag$</code>, not preceded by an identifier character, so that
+     * neither <code>$1</code> parameters nor identifiers containing <code>$</code> are taken for one.
+     */
+    private boolean isDollarQuoteStart(final int i) {
+        if (i > 0 && isIdentifierPart(script.charAt(i - 1))) {
+            return false;
+        }
+        int j = i + 1;
+        if (j < length && isIdentifierStart(script.charAt(j))) {
+            while (j < length && isIdentifierPart(script.charAt(j)) && script.charAt(j) != '$') {
+                j++;
+            }
+        }
+        return j < length && script.charAt(j) == '$';
+    }
+
+    private int endOfDollarQuoted(final int start) {
+        final int tagEnd = script.indexOf('$', start + 1) + 1;
+        final String tag = script.substring(start, tagEnd);
+        final int end = script.indexOf(tag, tagEnd);
+        return end < 0 ? length : end + tag.length();
+    }
+
+    private static boolean isIdentifierStart(final int c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(final int c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.sql.ResultSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs, at WARNING level, the statements taking longer than a threshold, once their result is read: the normalized
+ * SQL (see {@link QueryFingerprint}, literal values are not logged), the time spent executing and fetching, the rows
+ * returned and the connector definition.
+ * <p>
+ * Configured with system properties prefixed with {@value #PREFIX}:
+ * <ul>
+ * <li>{@value #THRESHOLD}: threshold in milliseconds, 0 (the default) disables the log</li>
+ * <li>{@value #MAX_PER_MINUTE}: entries logged per minute, 10 by default; the next ones are counted and reported
+ * with the first entry of the next minute</li>
+ * <li>{@value #EXPLAIN}: when true, the execution plan of slow queries is also logged, for the databases where
+ * {@link Dialect#explain(String, ParameterizedSql)} gives one. Plans are captured on a separate connection by a
+ * background thread, at most {@value #EXPLAIN_QUEUE} waiting at a time, so that the connector does not wait for
+ * them.</li>
+ * </ul>
+ * A statement under the threshold only costs a comparison.
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+    public static final String PREFIX = "org.bonitasoft.connectors.database.slowQuery.";
+
+    public static final String THRESHOLD = "threshold";
+
+    public static final String MAX_PER_MINUTE = "maxPerMinute";
+
+    public static final String EXPLAIN = "explain";
+
+    static final int EXPLAIN_QUEUE = 16;
+
+    private static final int EXPLAIN_TIMEOUT = 30;
+
+    private static final int MAX_SQL_LENGTH = 2000;
+
+    private static final int MAX_PLAN_ROWS = 100;
+
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog(
+            Long.getLong(PREFIX + THRESHOLD, 0), Integer.getInteger(PREFIX + MAX_PER_MINUTE, 10),
+            Boolean.getBoolean(PREFIX + EXPLAIN));
+
+    private final long thresholdNanos;
+
+    private final int maxPerMinute;
+
+    private final boolean explain;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    private final AtomicInteger logged = new AtomicInteger();
+
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    private volatile ThreadPoolExecutor explainExecutor;
+
+    /**
+     * @param threshold threshold in milliseconds, 0 to disable the log
+     */
+    SlowQueryLog(final long threshold, final int maxPerMinute, final boolean explain) {
+        thresholdNanos = threshold * 1_000_000;
+        this.maxPerMinute = maxPerMinute;
+        this.explain = explain;
+    }
+
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param executeNanos time spent executing the statement, in nanoseconds
+     * @return true when a statement that took that long, plus its fetch time, is logged
+     */
+    public boolean isSlow(final long executeNanos, final long fetchNanos) {
+        return thresholdNanos > 0 && executeNanos + fetchNanos >= thresholdNanos;
+    }
+
+    /**
+     * Logs the statement when it is slow and the rate limit allows it.
+     *
+     * @param fingerprint the {@link QueryFingerprint} of the script, see {@link ParsedScript#getFingerprint()}
+     * @param query the statement, with its bound values for the execution plan
+     * @param rows rows returned, or statements executed by a batch
+     * @param url JDBC URL of the database, selecting the EXPLAIN syntax
+     * @param explainConnection opens the connection capturing the plan, null when no plan must be captured
+     * @return true when the statement was logged
+     */
+    public boolean record(final String definitionId, final String fingerprint, final ParameterizedSql query,
+            final long executeNanos, final long fetchNanos, final long rows, final String url,
+            final Callable<Database> explainConnection) {
+        if (!isSlow(executeNanos, fetchNanos) || !acquire()) {
+            return false;
+        }
+        final String sql = QueryFingerprint.normalize(query.getSql(), MAX_SQL_LENGTH + 1);
+        final int previouslySuppressed = suppressed.getAndSet(0);
+        LOGGER.warning(String.format("Slow query %s (%s): %d ms, execute %d ms, fetch %d ms, %d rows%s:%n%s",
+                fingerprint, definitionId, (executeNanos + fetchNanos) / 1_000_000, executeNanos / 1_000_000,
+                fetchNanos / 1_000_000, rows,
+                previouslySuppressed > 0 ? ", " + previouslySuppressed + " slow queries not logged before" : "",
+                sql.length() > MAX_SQL_LENGTH ? sql.substring(0, MAX_SQL_LENGTH) + "..." : sql));
+        if (explain && explainConnection != null) {
+            final ParameterizedSql explainQuery = Dialect.explain(url, query);
+            if (explainQuery != null) {
+                getExplainExecutor().execute(() -> logPlan(fingerprint, explainQuery, explainConnection));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false when {@value #MAX_PER_MINUTE} entries were already logged in the current minute
+     */
+    private boolean acquire() {
+        final long now = System.nanoTime();
+        final long start = windowStart.get();
+        if (now - start >= TimeUnit.MINUTES.toNanos(1) && windowStart.compareAndSet(start, now)) {
+            logged.set(0);
+        }
+        if (logged.incrementAndGet() > maxPerMinute) {
+            suppressed.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private static void logPlan(final String fingerprint, final ParameterizedSql explainQuery,
+            final Callable<Database> explainConnection) {
+        Database database = null;
+        try {
+            database = explainConnection.call();
+            database.setQueryTimeout(EXPLAIN_TIMEOUT);
+            final ResultSet plan = database.select(explainQuery, ResultSet.TYPE_FORWARD_ONLY, MAX_PLAN_ROWS);
+            final StringBuilder lines = new StringBuilder();
+            final int columns = plan.getMetaData().getColumnCount();
+            while (plan.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    lines.append(i > 1 ? " | " : "").append(plan.getString(i));
+                }
+                lines.append(System.lineSeparator());
+            }
+            LOGGER.warning("Plan of slow query " + fingerprint + ":" + System.lineSeparator() + lines);
+        } catch (final Exception e) {
+            LOGGER.log(Level.FINE, "Unable to capture the plan of slow query " + fingerprint, e);
+        } finally {
+            if (database != null) {
+                try {
+                    database.disconnect();
+                } catch (final Exception e) {
+                    LOGGER.log(Level.FINE, "Unable to release the connection of the plan", e);
+                }
+            }
+        }
+    }
+
+    private ThreadPoolExecutor getExplainExecutor() {
+        if (explainExecutor == null) {
+            synchronized (this) {
+                if (explainExecutor == null) {
+                    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(EXPLAIN_QUEUE), runnable -> {
+                                final Thread thread = new Thread(runnable, "bonita-db-explain");
+                                thread.setDaemon(true);
+                                return thread;
+                            }, new ThreadPoolExecutor.DiscardPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                    explainExecutor = executor;
+                }
+            }
+        }
+        return explainExecutor;
+    }
+
+}
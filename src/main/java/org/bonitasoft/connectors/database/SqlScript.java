@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Commands of a script split by {@link ScriptSplitter}, stored as offsets into the original script. A command is
+ * only copied when {@link #getCommand(int)} is called.
+ */
+public class SqlScript {
+
+    private final String script;
+
+    private final int[] bounds;
+
+    private final int size;
+
+    SqlScript(final String script, final int[] bounds, final int size) {
+        this.script = script;
+        this.bounds = bounds;
+        this.size = size;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return offset in the script of the first character of the command at the given index
+     */
+    public int getStart(final int index) {
+        checkIndex(index);
+        return bounds[index * 2];
+    }
+
+    /**
+     * @return offset in the script following the last character of the command at the given index
+     */
+    public int getEnd(final int index) {
+        checkIndex(index);
+        return bounds[index * 2 + 1];
+    }
+
+    public String getCommand(final int index) {
+        return script.substring(getStart(index), getEnd(index));
+    }
+
+    /**
+     * @return a view of the commands, each one being copied from the script when it is read
+     */
+    public List<String> getCommands() {
+        return new AbstractList<String>() {
+
+            @Override
+            public String get(final int index) {
+                return getCommand(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+}
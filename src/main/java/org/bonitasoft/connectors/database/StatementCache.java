@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Least recently used cache of the {@link PreparedStatement}s of a pooled connection, so that process instances
+ * running the same SQL reuse the statement, and the server-side plan, prepared by the previous ones.
+ * <p>
+ * A cached statement is owned by the cache: users must not close it, the cache does when it is evicted.
+ */
+class StatementCache {
+
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+
+    private final Connection connection;
+
+    private final Map<String, PreparedStatement> statements;
+
+    StatementCache(final Connection connection, final int maxSize) {
+        this.connection = connection;
+        statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    close(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    PreparedStatement prepare(final String sql, final int resultSetType) throws SQLException {
+        final String key = resultSetType + ":" + sql;
+        PreparedStatement statement = statements.get(key);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql, resultSetType, ResultSet.CONCUR_READ_ONLY);
+            statements.put(key, statement);
+        }
+        return statement;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private static void close(final PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            LOGGER.log(Level.FINE, "Error while closing evicted statement", e);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tells whether a statement is a query by reading its leading keyword in place, skipping whitespace, comments and
+ * opening parentheses. For a <code>WITH</code> statement, the keyword following the common table expressions decides.
+ * <p>
+ * The check is only a hint to run the statement as a query: statements it does not recognise, such as procedure
+ * calls, are run with {@link java.sql.Statement#execute(String)}, which tells whether they produced a result set.
+ */
+public final class StatementClassifier {
+
+    private static final Set<String> QUERY_KEYWORDS = new HashSet<>(
+            Arrays.asList("SELECT", "VALUES", "TABLE", "SHOW", "DESCRIBE", "DESC", "EXPLAIN"));
+
+    private static final Set<String> CTE_MAIN_KEYWORDS = new HashSet<>(
+            Arrays.asList("SELECT", "VALUES", "TABLE", "INSERT", "UPDATE", "DELETE", "MERGE"));
+
+    private static final int LONGEST_KEYWORD = 9;
+
+    private StatementClassifier() {
+    }
+
+    public static boolean isQuery(final String sql) {
+        int i = skipBlank(sql, 0, true);
+        final String keyword = keywordAt(sql, i);
+        if (!"WITH".equals(keyword)) {
+            return keyword != null && QUERY_KEYWORDS.contains(keyword);
+        }
+        i += keyword.length();
+        while (i < sql.length()) {
+            i = skipBlank(sql, i, false);
+            if (i >= sql.length()) {
+                break;
+            }
+            final char c = sql.charAt(i);
+            if (c == '(') {
+                i = skipGroup(sql, i);
+            } else if (c == '"' || c == '`' || c == '\'') {
+                i = skipQuoted(sql, i + 1, c);
+            } else if (isWordPart(c)) {
+                final String word = keywordAt(sql, i);
+                if (word != null && CTE_MAIN_KEYWORDS.contains(word)) {
+                    return QUERY_KEYWORDS.contains(word);
+                }
+                while (i < sql.length() && isWordPart(sql.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the uppercased word starting at the given offset, or null when it is too long to be a keyword
+     */
+    private static String keywordAt(final String sql, final int start) {
+        int end = start;
+        while (end < sql.length() && isWordPart(sql.charAt(end))) {
+            end++;
+            if (end - start > LONGEST_KEYWORD) {
+                return null;
+            }
+        }
+        return end > start ? sql.substring(start, end).toUpperCase(Locale.ROOT) : null;
+    }
+
+    private static int skipBlank(final String sql, final int from, final boolean skipParentheses) {
+        int i = from;
+        while (i < sql.length()) {
+            final char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || (skipParentheses && c == '(')) {
+                i++;
+            } else if (sql.startsWith("--", i)) {
+                final int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (sql.startsWith("/*", i)) {
+                final int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static int skipGroup(final String sql, final int open) {
+        int depth = 0;
+        int i = open;
+        while (i < sql.length()) {
+            final char c = sql.charAt(i);
+            if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+                if (depth == 0) {
+                    return i;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i + 1, c);
+            } else if (sql.startsWith("--", i) || sql.startsWith("/*", i)) {
+                i = skipBlank(sql, i, false);
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static int skipQuoted(final String sql, final int from, final char quote) {
+        int i = from;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+}
@@ -17,16 +17,25 @@
  */
 package org.bonitasoft.connectors.database.datasource;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.StringTokenizer;
 import java.util.logging.Logger;
 
+import javax.naming.NamingException;
+
+import org.bonitasoft.connectors.database.BatchResult;
 import org.bonitasoft.connectors.database.Database;
+import org.bonitasoft.connectors.database.ParameterizedSql;
+import org.bonitasoft.connectors.database.ParsedScript;
+import org.bonitasoft.connectors.database.ScriptCache;
+import org.bonitasoft.connectors.database.result.DetachedResultSet;
+import org.bonitasoft.connectors.database.result.ResultBudget;
+import org.bonitasoft.connectors.database.result.RowMapper;
 import org.bonitasoft.engine.connector.Connector;
 import org.bonitasoft.engine.connector.ConnectorException;
 import org.bonitasoft.engine.connector.ConnectorValidationException;
@@ -44,26 +53,43 @@ public class DatasourceConnector implements Connector {
     public static final String SCRIPT_INPUT = "script";
     public static final String SEPARATOR_INPUT = "separator";
     public static final String PROPERTIES_INPUT = "properties";
+    public static final String PARAMETERS_INPUT = "parameters";
+    public static final String BATCH_PARAMETERS_INPUT = "batchParameters";
+    public static final String BATCH_SIZE_INPUT = "batchSize";
+    public static final String COMMIT_INTERVAL_INPUT = "commitInterval";
+    public static final String BATCH_UPDATE_COUNTS_OUTPUT = "batchUpdateCounts";
+    public static final String EXECUTED_STATEMENTS_OUTPUT = "executedStatements";
+    public static final String EXECUTION_TIME_OUTPUT = "executionTime";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
 
     private String datasource;
     private String script;
     private String separator;
     private Properties properties;
+    private Object queryParameters;
+    private Object batchParameters;
+    private Integer batchSize;
+    private Integer commitInterval;
     private Database database;
+    private ParsedScript parsedScript;
 
     @Override
     public Map<String, Object> execute() throws ConnectorException {
-        if (hasMultipleQuery()) {
+        if (batchParameters != null) {
+            return executeParameterizedBatch();
+        }
+        try {
+            parsedScript = ScriptCache.parse(script, separator);
+        } catch (final RuntimeException e) {
+            throw new ConnectorException(e);
+        }
+        if (parsedScript.getKind() == ParsedScript.Kind.BATCH) {
             return executeBatch();
         } else {
             return executeSingleQuery();
         }
     }
 
-    private boolean hasMultipleQuery() {
-        return separator != null;
-    }
-
     @Override
     public void setInputParameters(final Map<String, Object> parameters) {
         datasource = (String) parameters.get(DATASOURCE_INPUT);
@@ -72,6 +98,16 @@ public class DatasourceConnector implements Connector {
         LOGGER.info(SCRIPT_INPUT + " " + script);
         separator = (String) parameters.get(SEPARATOR_INPUT);
         LOGGER.info(SEPARATOR_INPUT + " " + separator);
+        queryParameters = parameters.get(PARAMETERS_INPUT);
+        LOGGER.info(PARAMETERS_INPUT + " " + queryParameters);
+        batchParameters = parameters.get(BATCH_PARAMETERS_INPUT);
+        if (batchParameters instanceof List) {
+            LOGGER.info(BATCH_PARAMETERS_INPUT + " " + ((List<?>) batchParameters).size() + " rows");
+        }
+        batchSize = (Integer) parameters.get(BATCH_SIZE_INPUT);
+        LOGGER.info(BATCH_SIZE_INPUT + " " + batchSize);
+        commitInterval = (Integer) parameters.get(COMMIT_INTERVAL_INPUT);
+        LOGGER.info(COMMIT_INTERVAL_INPUT + " " + commitInterval);
 
         @SuppressWarnings("unchecked")
         List<List<Object>> propertiesList = (List<List<Object>>) parameters.get(PROPERTIES_INPUT);
@@ -98,6 +134,18 @@ public class DatasourceConnector implements Connector {
         if (script == null || script.isEmpty()) {
             messages.add("Script is not set");
         }
+        if (!ParameterizedSql.isSupported(queryParameters)) {
+            messages.add("Parameters must be a list of values or a map of named values");
+        }
+        if (!Database.isBatchParameters(batchParameters)) {
+            messages.add("Batch parameters must be a list of rows, each row being a list of values");
+        }
+        if (batchSize != null && batchSize < 1) {
+            messages.add("Batch size must be greater than 0");
+        }
+        if (commitInterval != null && commitInterval < 0) {
+            messages.add("Commit interval can't be negative");
+        }
         if (!messages.isEmpty()) {
             throw new ConnectorValidationException(this, messages);
         }
@@ -125,36 +173,60 @@ public class DatasourceConnector implements Connector {
 
     private Map<String, Object> executeSingleQuery() throws ConnectorException {
         try {
-            final String command = script.toUpperCase().trim();
             final Map<String, Object> result = new HashMap<>(2);
-            if (command.startsWith("SELECT")) {
-                result.put("resultset", database.select(script));
+            final ResultSet resultSet;
+            if (queryParameters != null) {
+                final ParameterizedSql query = ParameterizedSql.of(script, queryParameters);
+                resultSet = parsedScript.isQuery() ? database.select(query, ResultSet.TYPE_FORWARD_ONLY, 0)
+                        : database.execute(query, ResultSet.TYPE_FORWARD_ONLY, 0);
             } else {
-                database.executeCommand(script);
+                resultSet = parsedScript.isQuery() ? database.select(script, ResultSet.TYPE_FORWARD_ONLY, 0)
+                        : database.execute(script, ResultSet.TYPE_FORWARD_ONLY, 0);
+            }
+            if (resultSet != null) {
+                result.put("resultset", DetachedResultSet.fill(resultSet,
+                        RowMapper.of(resultSet.getMetaData()), ResultBudget.unlimited()));
             }
+            // the rows are copied: the connection goes back to the DataSource before the output is used
+            database.disconnect();
             return result;
-        } catch (final SQLException sqle) {
-            throw new ConnectorException(sqle);
+        } catch (final SQLException | NamingException | IllegalArgumentException e) {
+            throw new ConnectorException(e);
         }
     }
 
     private Map<String, Object> executeBatch() throws ConnectorException {
-        final List<String> commands = getScriptCommands();
+        final List<String> commands = parsedScript.getCommands();
         try {
-            database.executeBatch(commands, true);
-            return null;
+            final BatchResult batchResult = database.executeBatch(commands,
+                    batchSize != null ? batchSize : commands.size(), getCommitInterval(), true);
+            return toOutputs(batchResult);
         } catch (final Exception e) {
             throw new ConnectorException(e);
         }
     }
 
-    private List<String> getScriptCommands() {
-        final List<String> commands = new ArrayList<>();
-        final StringTokenizer tokenizer = new StringTokenizer(script, separator);
-        while (tokenizer.hasMoreTokens()) {
-            final String command = tokenizer.nextToken();
-            commands.add(command.trim());
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> executeParameterizedBatch() throws ConnectorException {
+        try {
+            final BatchResult batchResult = database.executeBatch(script, (List<List<Object>>) batchParameters,
+                    batchSize != null ? batchSize : DEFAULT_BATCH_SIZE, getCommitInterval(), true);
+            return toOutputs(batchResult);
+        } catch (final Exception e) {
+            throw new ConnectorException(e);
         }
-        return commands;
+    }
+
+    private int getCommitInterval() {
+        return commitInterval != null ? commitInterval : 0;
+    }
+
+    private Map<String, Object> toOutputs(final BatchResult batchResult) {
+        LOGGER.info("Batch executed: " + batchResult);
+        final Map<String, Object> result = new HashMap<>();
+        result.put(BATCH_UPDATE_COUNTS_OUTPUT, batchResult.getUpdateCounts());
+        result.put(EXECUTED_STATEMENTS_OUTPUT, batchResult.getExecutedStatements());
+        result.put(EXECUTION_TIME_OUTPUT, batchResult.getElapsedTime());
+        return result;
     }
 }
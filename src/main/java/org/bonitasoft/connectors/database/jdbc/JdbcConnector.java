@@ -18,15 +18,40 @@
 package org.bonitasoft.connectors.database.jdbc;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 import java.util.logging.Logger;
 
+import javax.naming.NamingException;
+
+import org.bonitasoft.connectors.database.BatchResult;
+import org.bonitasoft.connectors.database.CancellationRegistry;
+import org.bonitasoft.connectors.database.CommandGroups;
+import org.bonitasoft.connectors.database.ConnectorMetrics.Counter;
+import org.bonitasoft.connectors.database.ConnectorMetrics.Phase;
 import org.bonitasoft.connectors.database.Database;
+import org.bonitasoft.connectors.database.Dialect;
+import org.bonitasoft.connectors.database.ExecutionMetrics;
+import org.bonitasoft.connectors.database.KeysetPagination;
+import org.bonitasoft.connectors.database.ParallelBatch;
+import org.bonitasoft.connectors.database.ParameterizedSql;
+import org.bonitasoft.connectors.database.ParsedScript;
+import org.bonitasoft.connectors.database.PartitionedQuery;
+import org.bonitasoft.connectors.database.ScriptCache;
+import org.bonitasoft.connectors.database.SlowQueryLog;
+import org.bonitasoft.connectors.database.result.Column;
+import org.bonitasoft.connectors.database.result.ColumnList;
+import org.bonitasoft.connectors.database.result.ColumnarTable;
+import org.bonitasoft.connectors.database.result.DetachedResultSet;
+import org.bonitasoft.connectors.database.result.ResultBudget;
+import org.bonitasoft.connectors.database.result.RowMapper;
+import org.bonitasoft.connectors.database.result.SizeEstimator;
+import org.bonitasoft.connectors.database.result.SpilledTable;
 import org.bonitasoft.engine.connector.Connector;
 import org.bonitasoft.engine.connector.ConnectorException;
 import org.bonitasoft.engine.connector.ConnectorValidationException;
@@ -49,6 +74,20 @@ public class JdbcConnector implements Connector {
 
     public static final String TABLE_RESULT_OUTPUT = "tableResult";
 
+    public static final String BATCH_UPDATE_COUNTS_OUTPUT = "batchUpdateCounts";
+
+    public static final String EXECUTED_STATEMENTS_OUTPUT = "executedStatements";
+
+    public static final String EXECUTION_TIME_OUTPUT = "executionTime";
+
+    public static final String TRUNCATED_OUTPUT = "truncated";
+
+    public static final String RESULT_SIZE_OUTPUT = "resultSize";
+
+    public static final String NEXT_CONTINUATION_TOKEN_OUTPUT = "nextContinuationToken";
+
+    public static final String GROUP_TIMINGS_OUTPUT = "groupTimings";
+
     public static final String USERNAME = "username";
 
     public static final String PASSWORD = "password";
@@ -63,11 +102,48 @@ public class JdbcConnector implements Connector {
 
     public static final String OUTPUT_TYPE = "outputType";
 
+    public static final String FETCH_SIZE = "fetchSize";
+
+    public static final String PARAMETERS = "parameters";
+
+    public static final String BATCH_PARAMETERS = "batchParameters";
+
+    public static final String BATCH_SIZE = "batchSize";
+
+    public static final String COMMIT_INTERVAL = "commitInterval";
+
+    public static final String MAX_ROWS = "maxRows";
+
+    public static final String MAX_RESULT_BYTES = "maxResultBytes";
+
+    public static final String TRUNCATE_RESULT = "truncateResult";
+
+    public static final String KEY_COLUMNS = "keyColumns";
+
+    public static final String PAGE_SIZE = "pageSize";
+
+    public static final String CONTINUATION_TOKEN = "continuationToken";
+
+    public static final String PARALLELISM = "parallelism";
+
+    public static final String PARTITION_COLUMN = "partitionColumn";
+
+    public static final String ORDERED_MERGE = "orderedMerge";
+
+    public static final String QUERY_TIMEOUT = "queryTimeout";
+
+    public static final String CONNECTOR_DEFINITION_ID = "connectorDefinitionId";
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     //Output types
     public static final String SINGLE = "single";
     public static final String N_ROW = "n_row";
+    public static final String N_ROW_COMPACT = "n_row_compact";
     public static final String ONE_ROW = "one_row";
     public static final String TABLE = "table";
+    public static final String TABLE_COLUMNAR = "table_columnar";
+    public static final String TABLE_SPILLED = "table_spilled";
 
     private String url;
 
@@ -83,15 +159,65 @@ public class JdbcConnector implements Connector {
 
     private String outputType;
 
+    private Integer fetchSize;
+
+    private Object queryParameters;
+
+    private Object batchParameters;
+
+    private Integer batchSize;
+
+    private Integer commitInterval;
+
+    private Integer maxRows;
+
+    private Long maxResultBytes;
+
+    private Boolean truncateResult;
+
+    private List<String> keyColumns;
+
+    private Integer pageSize;
+
+    private String continuationToken;
+
+    private Integer parallelism;
+
+    private String partitionColumn;
+
+    private Boolean orderedMerge;
+
+    private Integer queryTimeout;
+
+    private String connectorDefinitionId;
+
     private Database database;
 
+    private CancellationRegistry.Execution execution;
+
+    private ExecutionMetrics metrics = ExecutionMetrics.disabled();
+
+    private long mapNanos;
+
+    private ParsedScript parsedScript;
+
     private ResultSet data;
 
+    /**
+     * Spilled table output of the execution, closed on disconnect unless the execution succeeded.
+     */
+    private SpilledTable spilledTable;
+
+    private ResultBudget resultBudget = ResultBudget.unlimited();
+
     private Logger LOGGER = Logger.getLogger(this.getClass().getName());
 
     @Override
     public Map<String, Object> execute() throws ConnectorException {
-        if (separator != null) {
+        if (batchParameters != null) {
+            return executeParameterizedBatch();
+        }
+        if (parsedScript.getKind() == ParsedScript.Kind.BATCH) {
             return executeBatch();
         } else {
             return executeSingleQuery();
@@ -99,6 +225,7 @@ public class JdbcConnector implements Connector {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void setInputParameters(final Map<String, Object> parameters) {
         userName = (String) parameters.get(USERNAME);
         LOGGER.info(USERNAME + " " + userName);
@@ -120,6 +247,41 @@ public class JdbcConnector implements Connector {
         LOGGER.info(URL + " " + url);
         outputType = (String) parameters.get(OUTPUT_TYPE);
         LOGGER.info(OUTPUT_TYPE + " " + outputType);
+        fetchSize = (Integer) parameters.get(FETCH_SIZE);
+        LOGGER.info(FETCH_SIZE + " " + fetchSize);
+        queryParameters = parameters.get(PARAMETERS);
+        LOGGER.info(PARAMETERS + " " + queryParameters);
+        batchParameters = parameters.get(BATCH_PARAMETERS);
+        if (batchParameters instanceof List) {
+            LOGGER.info(BATCH_PARAMETERS + " " + ((List<?>) batchParameters).size() + " rows");
+        }
+        batchSize = (Integer) parameters.get(BATCH_SIZE);
+        LOGGER.info(BATCH_SIZE + " " + batchSize);
+        commitInterval = (Integer) parameters.get(COMMIT_INTERVAL);
+        LOGGER.info(COMMIT_INTERVAL + " " + commitInterval);
+        maxRows = (Integer) parameters.get(MAX_ROWS);
+        LOGGER.info(MAX_ROWS + " " + maxRows);
+        final Object maxResultBytesValue = parameters.get(MAX_RESULT_BYTES);
+        maxResultBytes = maxResultBytesValue instanceof Number ? ((Number) maxResultBytesValue).longValue() : null;
+        LOGGER.info(MAX_RESULT_BYTES + " " + maxResultBytes);
+        truncateResult = (Boolean) parameters.get(TRUNCATE_RESULT);
+        LOGGER.info(TRUNCATE_RESULT + " " + truncateResult);
+        keyColumns = (List<String>) parameters.get(KEY_COLUMNS);
+        LOGGER.info(KEY_COLUMNS + " " + keyColumns);
+        pageSize = (Integer) parameters.get(PAGE_SIZE);
+        LOGGER.info(PAGE_SIZE + " " + pageSize);
+        continuationToken = (String) parameters.get(CONTINUATION_TOKEN);
+        LOGGER.info(CONTINUATION_TOKEN + " " + continuationToken);
+        parallelism = (Integer) parameters.get(PARALLELISM);
+        LOGGER.info(PARALLELISM + " " + parallelism);
+        partitionColumn = (String) parameters.get(PARTITION_COLUMN);
+        LOGGER.info(PARTITION_COLUMN + " " + partitionColumn);
+        orderedMerge = (Boolean) parameters.get(ORDERED_MERGE);
+        LOGGER.info(ORDERED_MERGE + " " + orderedMerge);
+        queryTimeout = (Integer) parameters.get(QUERY_TIMEOUT);
+        LOGGER.info(QUERY_TIMEOUT + " " + queryTimeout);
+        connectorDefinitionId = (String) parameters.get(CONNECTOR_DEFINITION_ID);
+        LOGGER.info(CONNECTOR_DEFINITION_ID + " " + connectorDefinitionId);
     }
 
     @Override
@@ -134,76 +296,340 @@ public class JdbcConnector implements Connector {
         if (script == null || script.isEmpty()) {
             messages.add("Script is not set");
         }
+        if (fetchSize != null && fetchSize < 0) {
+            messages.add("Fetch size can't be negative");
+        }
+        if (!ParameterizedSql.isSupported(queryParameters)) {
+            messages.add("Parameters must be a list of values or a map of named values");
+        }
+        if (!Database.isBatchParameters(batchParameters)) {
+            messages.add("Batch parameters must be a list of rows, each row being a list of values");
+        }
+        if (batchSize != null && batchSize < 1) {
+            messages.add("Batch size must be greater than 0");
+        }
+        if (commitInterval != null && commitInterval < 0) {
+            messages.add("Commit interval can't be negative");
+        }
+        if (maxRows != null && maxRows < 0) {
+            messages.add("Max rows can't be negative");
+        }
+        if (maxResultBytes != null && maxResultBytes < 0) {
+            messages.add("Max result bytes can't be negative");
+        }
+        if (queryTimeout != null && queryTimeout < 0) {
+            messages.add("Query timeout can't be negative");
+        }
+        if (parallelism != null && parallelism < 1) {
+            messages.add("Parallelism must be greater than 0");
+        }
+        if (isParallel() && getCommitInterval() > 0) {
+            messages.add("Commit interval can't be used with parallelism, all groups are committed together");
+        }
+        if (isPaginated() || pageSize != null || continuationToken != null) {
+            validatePagination(messages);
+        }
+        if (isPartitioned()) {
+            validatePartitioning(messages);
+        }
 
         if (!messages.isEmpty()) {
             throw new ConnectorValidationException(this, messages);
         }
     }
 
+    private void validatePagination(final List<String> messages) {
+        if (!isPaginated() || pageSize == null) {
+            messages.add("Key columns and page size must be set together");
+        }
+        if (pageSize != null && pageSize < 1) {
+            messages.add("Page size must be greater than 0");
+        }
+        if (keyColumns != null) {
+            for (final Object keyColumn : keyColumns) {
+                if (!(keyColumn instanceof String) || !KeysetPagination.isValidColumn((String) keyColumn)) {
+                    messages.add("Invalid key column name: " + keyColumn);
+                }
+            }
+        }
+        if (SINGLE.equals(outputType) || ONE_ROW.equals(outputType)) {
+            messages.add("Pagination needs an output type returning several rows");
+        }
+        if (ParsedScript.isBatch(separator) || batchParameters != null) {
+            messages.add("Pagination only applies to a single query");
+        }
+    }
+
+    private void validatePartitioning(final List<String> messages) {
+        if (!KeysetPagination.isValidColumn(partitionColumn)) {
+            messages.add("Invalid partition column name: " + partitionColumn);
+        }
+        if (!TABLE.equals(outputType) && !N_ROW.equals(outputType)) {
+            messages.add("Partitioned query needs the table or n_row output type");
+        }
+        if (isPaginated()) {
+            messages.add("Partitioned query can't be paginated");
+        }
+        if (ParsedScript.isBatch(separator) || batchParameters != null) {
+            messages.add("Partitioned query only applies to a single query");
+        }
+    }
+
+    private boolean isParallel() {
+        return parallelism != null && parallelism > 1;
+    }
+
+    private boolean isPartitioned() {
+        return partitionColumn != null && !partitionColumn.isEmpty();
+    }
+
+    private boolean isPaginated() {
+        return keyColumns != null && !keyColumns.isEmpty();
+    }
+
     @Override
     public void connect() throws ConnectorException {
+        execution = CancellationRegistry.register(script != null && script.length() > 200
+                ? script.substring(0, 200) + "..." : script);
+        LOGGER.fine("Execution " + execution.getId() + " registered");
         try {
-            database = new Database(driver, url, userName, password);
+            // parsed once per script by the cache, with its fingerprint
+            parsedScript = ScriptCache.parse(script, separator);
+            metrics = ExecutionMetrics.of(connectorDefinitionId, parsedScript);
+            database = newDatabase();
         } catch (final Exception e) {
+            execution.close();
             throw new ConnectorException(e);
         }
     }
 
+    /**
+     * Opens a connection whose statements are tracked by the execution of the connector.
+     */
+    private Database newDatabase() throws ClassNotFoundException, SQLException {
+        final long start = System.nanoTime();
+        final Database newDatabase = new Database(driver, url, userName, password);
+        metrics.time(Phase.CONNECT, start);
+        if (fetchSize != null) {
+            newDatabase.setFetchSize(fetchSize);
+        }
+        if (queryTimeout != null) {
+            newDatabase.setQueryTimeout(queryTimeout);
+        }
+        newDatabase.setExecution(execution);
+        return newDatabase;
+    }
+
     @Override
     public void disconnect() throws ConnectorException {
-        if (script.toUpperCase().trim().startsWith("SELECT")) {
-            try {
-                if (data != null) {
-                    data.close();
-                }
-            } catch (Exception e) {
-                throw new ConnectorException(e);
+        try {
+            if (data != null) {
+                data.close();
+            }
+            if (spilledTable != null) {
+                spilledTable.close();
+                spilledTable = null;
+            }
+            release();
+        } catch (final Exception e) {
+            throw new ConnectorException(e);
+        } finally {
+            if (execution != null) {
+                execution.close();
             }
         }
+    }
 
+    /**
+     * Releases the connection of the connector, once.
+     */
+    private void release() throws SQLException, NamingException {
         if (database != null) {
-            try {
-                database.disconnect();
-            } catch (final Exception e) {
-                throw new ConnectorException(e);
-            }
+            final long start = System.nanoTime();
+            database.disconnect();
+            database = null;
+            metrics.time(Phase.DISCONNECT, start);
         }
     }
 
     private Map<String, Object> executeSingleQuery() throws ConnectorException {
         try {
-            final String command = script.toUpperCase().trim();
-            final Map<String, Object> result = new HashMap<String, Object>(2);
-            if (command.startsWith("SELECT")) {
-                data = database.select(script);
-                if (SINGLE.equals(outputType)) {
-                    handleSingleResult(data, result);
-                } else if (N_ROW.equals(outputType)) {
-                    handleNRowResult(data, result);
-                } else if (ONE_ROW.equals(outputType)) {
-                    handleOneRowResult(data, result);
-                } else if (TABLE.equals(outputType)) {
-                    handleTableResult(data, result);
-                } else {
-                    result.put(RESULTSET_OUTPUT, data);
+            final Map<String, Object> result = new HashMap<String, Object>(4);
+            ParameterizedSql query = queryParameters != null ? ParameterizedSql.of(script, queryParameters)
+                    : null;
+            KeysetPagination pagination = null;
+            String paginatedSql = null;
+            if (isPaginated()) {
+                // the page is complete when the next row does not fit, a byte limit just makes it shorter
+                resultBudget = new ResultBudget(pageSize, maxResultBytes != null ? maxResultBytes : 0, true);
+                if (!parsedScript.isQuery()) {
+                    throw new ConnectorException("Pagination only applies to queries:\n" + script);
+                }
+                pagination = new KeysetPagination(keyColumns, pageSize, Dialect.fromUrl(url));
+                paginatedSql = query != null ? query.getSql() : script;
+                query = pagination.pageQuery(paginatedSql,
+                        query != null ? query.getValues() : Collections.emptyList(), continuationToken);
+            } else {
+                resultBudget = new ResultBudget(maxRows != null ? maxRows : 0,
+                        maxResultBytes != null ? maxResultBytes : 0, Boolean.TRUE.equals(truncateResult));
+            }
+            if (isPartitioned()) {
+                if (!parsedScript.isQuery()) {
+                    throw new ConnectorException("Partitioned query only applies to queries:\n" + script);
                 }
+                return executePartitionedQuery(
+                        query != null ? query : ParameterizedSql.of(script, Collections.emptyList()));
+            }
+            final long executeStart = System.nanoTime();
+            if (parsedScript.isQuery()) {
+                data = query != null ? database.select(query, ResultSet.TYPE_FORWARD_ONLY, getMaxRows())
+                        : database.select(script, ResultSet.TYPE_FORWARD_ONLY, getMaxRows());
             } else {
-                database.executeCommand(script);
+                data = query != null ? database.execute(query, ResultSet.TYPE_FORWARD_ONLY, getMaxRows())
+                        : database.execute(script, ResultSet.TYPE_FORWARD_ONLY, getMaxRows());
+            }
+            final long executeNanos = System.nanoTime() - executeStart;
+            metrics.record(Phase.EXECUTE, executeNanos);
+            final int[] keyIndexes = pagination != null ? pagination.getKeyIndexes(data.getMetaData()) : null;
+            final int columnCount = data != null ? data.getMetaData().getColumnCount() : 0;
+            final long fetchStart = System.nanoTime();
+            mapNanos = 0;
+            if (data == null) {
                 result.put(RESULTSET_OUTPUT, null);
+            } else if (SINGLE.equals(outputType)) {
+                handleSingleResult(data, result);
+            } else if (N_ROW.equals(outputType)) {
+                handleNRowResult(data, result);
+            } else if (N_ROW_COMPACT.equals(outputType)) {
+                handleCompactNRowResult(data, result);
+            } else if (ONE_ROW.equals(outputType)) {
+                handleOneRowResult(data, result);
+            } else if (TABLE.equals(outputType)) {
+                handleTableResult(data, result);
+            } else if (TABLE_COLUMNAR.equals(outputType)) {
+                handleColumnarTableResult(data, result);
+            } else if (TABLE_SPILLED.equals(outputType)) {
+                handleSpilledTableResult(data, result);
+            } else {
+                handleDetachedResult(data, result);
+            }
+            logIfSlow(query, executeNanos, data != null ? System.nanoTime() - fetchStart : 0,
+                    resultBudget.getRows(), parsedScript.isQuery());
+            if (data != null) {
+                recordFetch(fetchStart, columnCount);
+                result.put(TRUNCATED_OUTPUT, resultBudget.isTruncated());
+                result.put(RESULT_SIZE_OUTPUT, resultBudget.getSize());
+                if (resultBudget.isTruncated() && pagination == null) {
+                    LOGGER.warning("Result truncated to " + resultBudget.getRows() + " rows:\n" + script);
+                }
+            }
+            if (pagination != null) {
+                result.put(NEXT_CONTINUATION_TOKEN_OUTPUT, resultBudget.isTruncated()
+                        ? pagination.nextToken(paginatedSql, getLastKey(result, keyIndexes)) : null);
             }
+            // every output holds a copy of the rows: the connection goes back to the pool before the outputs are used
+            data = null;
+            database.commitCursor();
+            release();
+            spilledTable = null;
             return result;
-        } catch (final SQLException sqle) {
-            throw new ConnectorException(sqle);
+        } catch (final SQLException | NamingException | IllegalArgumentException e) {
+            throw new ConnectorException(e);
+        }
+    }
+
+    /**
+     * Hands the statement to the {@link SlowQueryLog}, with a connection factory to capture the plan of queries.
+     *
+     * @param query the statement, null for the script without parameters
+     */
+    private void logIfSlow(final ParameterizedSql query, final long executeNanos, final long fetchNanos,
+            final long rows, final boolean explainable) {
+        final SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+        if (slowQueryLog.isSlow(executeNanos, fetchNanos)) {
+            slowQueryLog.record(connectorDefinitionId, parsedScript.getFingerprint(),
+                    query != null ? query : ParameterizedSql.of(script, Collections.emptyList()), executeNanos,
+                    fetchNanos, rows, url, explainable ? () -> new Database(driver, url, userName, password) : null);
         }
     }
 
-    protected void handleTableResult(ResultSet rSet, Map<String, Object> result) throws SQLException {
+    /**
+     * Records the time spent reading the rows since fetchStart, minus the time spent mapping them when the output
+     * type measures it, and the size of the result.
+     */
+    private void recordFetch(final long fetchStart, final int columnCount) {
+        metrics.record(Phase.FETCH, System.nanoTime() - fetchStart - mapNanos);
+        if (mapNanos > 0) {
+            metrics.record(Phase.MAP, mapNanos);
+        }
+        metrics.count(Counter.ROWS_FETCHED, resultBudget.getRows());
+        metrics.count(Counter.CELLS_MAPPED, (long) resultBudget.getRows() * columnCount);
+        metrics.count(Counter.ESTIMATED_BYTES, resultBudget.getSize());
+    }
+
+    /**
+     * Single result only reads the first row, and one row result only needs a second one to detect that the query
+     * returns too many rows: the driver does not have to fetch more. Other output types fetch one row more than the
+     * row limit, to detect a truncation. All of them read the rows forward only, which lets the driver stream them.
+     */
+    private int getMaxRows() {
+        if (SINGLE.equals(outputType)) {
+            return 1;
+        } else if (ONE_ROW.equals(outputType)) {
+            return 2;
+        }
+        return resultBudget.getFetchLimit();
+    }
+
+    /**
+     * Copies the rows into a scrollable {@link DetachedResultSet}, which stays readable once the connection is
+     * released.
+     */
+    protected void handleDetachedResult(ResultSet rSet, Map<String, Object> result)
+            throws SQLException, ConnectorException {
+        result.put(RESULTSET_OUTPUT, DetachedResultSet.fill(rSet, getRowMapper(rSet), resultBudget));
+        rSet.close();
+    }
+
+    /**
+     * @return the key values of the last row of the page, read back from the output
+     */
+    private List<Object> getLastKey(final Map<String, Object> result, final int[] keyIndexes)
+            throws SQLException, ConnectorException {
+        final List<Object> lastKey = new ArrayList<>(keyIndexes.length);
+        final Object table = result.get(TABLE_RESULT_OUTPUT);
+        final Object column = result.get(NROW_ONECOL_RESULT_OUTPUT);
+        final Object rows = result.get(RESULTSET_OUTPUT);
+        if (table instanceof List && !((List<?>) table).isEmpty()) {
+            final List<?> lastRow = (List<?>) ((List<?>) table).get(((List<?>) table).size() - 1);
+            for (final int keyIndex : keyIndexes) {
+                lastKey.add(lastRow.get(keyIndex));
+            }
+        } else if (column instanceof List && !((List<?>) column).isEmpty()) {
+            lastKey.add(((List<?>) column).get(((List<?>) column).size() - 1));
+        } else if (rows instanceof DetachedResultSet && ((DetachedResultSet) rows).getRowCount() > 0) {
+            final DetachedResultSet resultSet = (DetachedResultSet) rows;
+            resultSet.last();
+            for (final int keyIndex : keyIndexes) {
+                lastKey.add(resultSet.getObject(keyIndex + 1));
+            }
+            resultSet.beforeFirst();
+        } else {
+            throw new ConnectorException("The first row of the page exceeds the max result bytes");
+        }
+        return lastKey;
+    }
+
+    protected void handleTableResult(ResultSet rSet, Map<String, Object> result)
+            throws SQLException, ConnectorException {
         final List<List<Object>> resultTable = new ArrayList<>();
-        int maxColumn = rSet.getMetaData().getColumnCount() + 1;
-        while (rSet.next()) {
-            final List<Object> row = new ArrayList<>();
-            for (int colIndex = 1; colIndex < maxColumn; colIndex++) {
-                row.add(rSet.getObject(colIndex));
+        final RowMapper rowMapper = getRowMapper(rSet);
+        while (rSet.next() && resultBudget.acceptRow()) {
+            final long mapStart = System.nanoTime();
+            final List<Object> row = rowMapper.mapRow(rSet);
+            mapNanos += System.nanoTime() - mapStart;
+            if (!resultBudget.add(SizeEstimator.estimateRow(row))) {
+                break;
             }
             resultTable.add(row);
         }
@@ -211,15 +637,33 @@ public class JdbcConnector implements Connector {
         rSet.close();
     }
 
+    /**
+     * Same output as {@link #handleTableResult(ResultSet, Map)}, stored column by column in primitive arrays where
+     * possible, see {@link ColumnarTable}.
+     */
+    protected void handleColumnarTableResult(ResultSet rSet, Map<String, Object> result)
+            throws SQLException, ConnectorException {
+        result.put(TABLE_RESULT_OUTPUT, ColumnarTable.read(rSet, resultBudget));
+        rSet.close();
+    }
+
+    /**
+     * Same output as {@link #handleTableResult(ResultSet, Map)}, stored in a temporary file and decoded on access, see
+     * {@link SpilledTable}. The result size is the size of the file.
+     */
+    protected void handleSpilledTableResult(ResultSet rSet, Map<String, Object> result)
+            throws SQLException, ConnectorException {
+        spilledTable = SpilledTable.write(rSet, getRowMapper(rSet), resultBudget);
+        result.put(TABLE_RESULT_OUTPUT, spilledTable);
+        rSet.close();
+    }
+
     protected void handleOneRowResult(ResultSet rSet, Map<String, Object> result)
             throws SQLException, ConnectorException {
-        final List<Object> resultList = new ArrayList<>();
-        if (rSet.first()) {
-            if (rSet.isLast()) {
-                int maxColumn = rSet.getMetaData().getColumnCount() + 1;
-                for (int colIndex = 1; colIndex < maxColumn; colIndex++) {
-                    resultList.add(rSet.getObject(colIndex));
-                }
+        if (rSet.next()) {
+            final List<Object> resultList = getRowMapper(rSet).mapRow(rSet);
+            resultBudget.record(SizeEstimator.estimateRow(resultList));
+            if (!rSet.next()) {
                 result.put(ONEROW_NCOL_RESULT_OUTPUT, resultList);
             } else {
                 rSet.close();
@@ -228,7 +672,7 @@ public class JdbcConnector implements Connector {
                                 + script);
             }
         } else {
-            result.put(ONEROW_NCOL_RESULT_OUTPUT, resultList);
+            result.put(ONEROW_NCOL_RESULT_OUTPUT, new ArrayList<>());
         }
         rSet.close();
     }
@@ -243,13 +687,48 @@ public class JdbcConnector implements Connector {
                             + script);
         }
         final List<Object> resultList = new ArrayList<>();
-        while (rSet.next()) {
-            resultList.add(rSet.getObject(1));
+        final RowMapper rowMapper = getRowMapper(rSet);
+        while (rSet.next() && resultBudget.acceptRow()) {
+            final long mapStart = System.nanoTime();
+            final Object value = rowMapper.getValue(rSet, 1);
+            mapNanos += System.nanoTime() - mapStart;
+            if (!resultBudget.add(SizeEstimator.REFERENCE + SizeEstimator.estimate(value))) {
+                break;
+            }
+            resultList.add(value);
         }
         result.put(NROW_ONECOL_RESULT_OUTPUT, resultList);
         rSet.close();
     }
 
+    /**
+     * Same output as {@link #handleNRowResult(ResultSet, Map)}, read with getLong for integral columns and getDouble
+     * for floating-point columns into a primitive array, see {@link ColumnList}. Integral values are returned as Long
+     * whatever their SQL type.
+     */
+    protected void handleCompactNRowResult(ResultSet rSet, Map<String, Object> result)
+            throws SQLException, ConnectorException {
+        final ResultSetMetaData metaData = rSet.getMetaData();
+        if (metaData.getColumnCount() != 1) {
+            rSet.close();
+            throw new ConnectorException(
+                    "N rows one column result output mode is not compatible with execucted query (invalid number of columns in resultset):\n"
+                            + script);
+        }
+        final Column column = Column.forNumericType(metaData.getColumnType(1), metaData.getPrecision(1),
+                metaData.getScale(1));
+        while (rSet.next() && resultBudget.acceptRow()) {
+            column.read(rSet, 1);
+            if (!resultBudget.add(column.sizeOf(column.size() - 1))) {
+                column.removeLast();
+                break;
+            }
+        }
+        column.trim();
+        result.put(NROW_ONECOL_RESULT_OUTPUT, new ColumnList(column));
+        rSet.close();
+    }
+
     protected void handleSingleResult(ResultSet rSet, Map<String, Object> result)
             throws SQLException, ConnectorException {
         int colCount = rSet.getMetaData().getColumnCount();
@@ -259,33 +738,183 @@ public class JdbcConnector implements Connector {
                     "Single result output mode is not compatible with execucted query (invalid number of columns in resultset):\n"
                             + script);
         }
-        if (rSet.first()) {
-            result.put(SINGLE_RESULT_OUTPUT, rSet.getObject(1));
+        if (rSet.next()) {
+            final Object value = getRowMapper(rSet).getValue(rSet, 1);
+            resultBudget.record(SizeEstimator.estimate(value));
+            result.put(SINGLE_RESULT_OUTPUT, value);
         } else {
             result.put(SINGLE_RESULT_OUTPUT, null);
         }
         rSet.close();
     }
 
+    private RowMapper getRowMapper(final ResultSet rSet) throws SQLException {
+        return RowMapper.of(rSet.getMetaData());
+    }
+
     private Map<String, Object> executeBatch() throws ConnectorException {
-        final List<String> commands = getScriptCommands();
+        final List<String> commands = parsedScript.getCommands();
+        if (isParallel()) {
+            return executeParallelBatch(CommandGroups.split(commands));
+        }
         try {
-            database.executeBatch(commands, true);
-            Map<String, Object> result = new HashMap<String, Object>();
+            final long start = System.nanoTime();
+            final BatchResult batchResult = database.executeBatch(commands,
+                    batchSize != null ? batchSize : commands.size(), getCommitInterval(), true);
+            final long executeNanos = System.nanoTime() - start;
+            metrics.record(Phase.EXECUTE, executeNanos);
+            logIfSlow(null, executeNanos, 0, batchResult.getExecutedStatements(), false);
+            return toOutputs(batchResult);
+        } catch (final Exception e) {
+            throw new ConnectorException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> executeParameterizedBatch() throws ConnectorException {
+        try {
+            final long start = System.nanoTime();
+            final BatchResult batchResult = database.executeBatch(script, (List<List<Object>>) batchParameters,
+                    batchSize != null ? batchSize : DEFAULT_BATCH_SIZE, getCommitInterval(), true);
+            final long executeNanos = System.nanoTime() - start;
+            metrics.record(Phase.EXECUTE, executeNanos);
+            logIfSlow(null, executeNanos, 0, batchResult.getExecutedStatements(), false);
+            return toOutputs(batchResult);
+        } catch (final Exception e) {
+            throw new ConnectorException(e);
+        }
+    }
+
+    /**
+     * Runs the groups of the script on the connection of the connector and on parallelism - 1 other connections.
+     */
+    private Map<String, Object> executeParallelBatch(final List<List<String>> groups) throws ConnectorException {
+        final long start = System.nanoTime();
+        final List<Database> databases = new ArrayList<>();
+        databases.add(database);
+        try {
+            for (int i = 1; i < Math.min(parallelism, groups.size()); i++) {
+                databases.add(newDatabase());
+            }
+            final List<BatchResult> results = ParallelBatch.execute(databases, groups,
+                    batchSize != null ? batchSize : 0);
+            final List<Integer> updateCounts = new ArrayList<>();
+            final List<Long> groupTimings = new ArrayList<>(results.size());
+            int executedStatements = 0;
+            for (final BatchResult groupResult : results) {
+                updateCounts.addAll(groupResult.getUpdateCounts());
+                groupTimings.add(groupResult.getElapsedTime());
+                executedStatements += groupResult.getExecutedStatements();
+            }
+            final long executeNanos = System.nanoTime() - start;
+            metrics.record(Phase.EXECUTE, executeNanos);
+            logIfSlow(null, executeNanos, 0, executedStatements, false);
+            metrics.count(Counter.BATCH_SIZE, executedStatements);
+            final long executionTime = (System.nanoTime() - start) / 1_000_000;
+            LOGGER.info("Parallel batch executed: " + groups.size() + " groups on " + databases.size()
+                    + " connections, " + executedStatements + " statements in " + executionTime + " ms");
+            final Map<String, Object> result = new HashMap<String, Object>();
             result.put(RESULTSET_OUTPUT, null);
+            result.put(BATCH_UPDATE_COUNTS_OUTPUT, updateCounts);
+            result.put(EXECUTED_STATEMENTS_OUTPUT, executedStatements);
+            result.put(EXECUTION_TIME_OUTPUT, executionTime);
+            result.put(GROUP_TIMINGS_OUTPUT, groupTimings);
             return result;
-        } catch (final Exception e) {
+        } catch (final ClassNotFoundException | SQLException e) {
             throw new ConnectorException(e);
+        } finally {
+            for (final Database other : databases.subList(1, databases.size())) {
+                try {
+                    other.disconnect();
+                } catch (final SQLException | NamingException e) {
+                    LOGGER.warning("Unable to release connection: " + e.getMessage());
+                }
+            }
         }
     }
 
-    private List<String> getScriptCommands() {
-        final List<String> commands = new ArrayList<String>();
-        final StringTokenizer tokenizer = new StringTokenizer(script, separator);
-        while (tokenizer.hasMoreTokens()) {
-            final String command = tokenizer.nextToken();
-            commands.add(command.trim());
+    /**
+     * Runs the partitions of the query on the connection of the connector and on parallelism - 1 other connections,
+     * and merges their rows into the table or n_row output.
+     */
+    private Map<String, Object> executePartitionedQuery(final ParameterizedSql query)
+            throws ConnectorException, SQLException, NamingException {
+        final long start = System.nanoTime();
+        mapNanos = 0;
+        final PartitionedQuery partitionedQuery = new PartitionedQuery(partitionColumn,
+                Boolean.TRUE.equals(orderedMerge));
+        final List<ParameterizedSql> partitions = partitionedQuery.partition(database, query.getSql(),
+                query.getValues(), parallelism != null ? parallelism : 1);
+        final long executeNanos = System.nanoTime() - start;
+        metrics.record(Phase.EXECUTE, executeNanos);
+        final long fetchStart = System.nanoTime();
+        final List<Database> databases = new ArrayList<>();
+        databases.add(database);
+        final List<Object> rows = new ArrayList<>();
+        final boolean singleColumn = N_ROW.equals(outputType);
+        try {
+            for (int i = 1; i < partitions.size(); i++) {
+                databases.add(newDatabase());
+            }
+            partitionedQuery.execute(databases, partitions, resultBudget.getFetchLimit(), row -> {
+                if (singleColumn && row.size() != 1) {
+                    throw new ConnectorException(
+                            "N rows one column result output mode is not compatible with execucted query (invalid number of columns in resultset):\n"
+                                    + script);
+                }
+                if (!resultBudget.acceptRow()) {
+                    return false;
+                }
+                final Object value = singleColumn ? row.get(0) : row;
+                final long size = singleColumn ? SizeEstimator.REFERENCE + SizeEstimator.estimate(value)
+                        : SizeEstimator.estimateRow(row);
+                if (!resultBudget.add(size)) {
+                    return false;
+                }
+                rows.add(value);
+                return true;
+            });
+            for (final Database partitionDatabase : databases) {
+                partitionDatabase.commitCursor();
+            }
+        } catch (final ClassNotFoundException e) {
+            throw new ConnectorException(e);
+        } finally {
+            for (final Database other : databases.subList(1, databases.size())) {
+                try {
+                    other.disconnect();
+                } catch (final SQLException | NamingException e) {
+                    LOGGER.warning("Unable to release connection: " + e.getMessage());
+                }
+            }
         }
-        return commands;
+        logIfSlow(query, executeNanos, System.nanoTime() - fetchStart, resultBudget.getRows(), true);
+        recordFetch(fetchStart, singleColumn || rows.isEmpty() ? 1 : ((List<?>) rows.get(0)).size());
+        LOGGER.info("Partitioned query executed: " + partitions.size() + " partitions, " + rows.size() + " rows in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        final Map<String, Object> result = new HashMap<String, Object>(4);
+        result.put(singleColumn ? NROW_ONECOL_RESULT_OUTPUT : TABLE_RESULT_OUTPUT, rows);
+        result.put(TRUNCATED_OUTPUT, resultBudget.isTruncated());
+        result.put(RESULT_SIZE_OUTPUT, resultBudget.getSize());
+        if (resultBudget.isTruncated()) {
+            LOGGER.warning("Result truncated to " + resultBudget.getRows() + " rows:\n" + script);
+        }
+        release();
+        return result;
+    }
+
+    private int getCommitInterval() {
+        return commitInterval != null ? commitInterval : 0;
+    }
+
+    private Map<String, Object> toOutputs(final BatchResult batchResult) {
+        LOGGER.info("Batch executed: " + batchResult);
+        metrics.count(Counter.BATCH_SIZE, batchResult.getExecutedStatements());
+        final Map<String, Object> result = new HashMap<String, Object>();
+        result.put(RESULTSET_OUTPUT, null);
+        result.put(BATCH_UPDATE_COUNTS_OUTPUT, batchResult.getUpdateCounts());
+        result.put(EXECUTED_STATEMENTS_OUTPUT, batchResult.getExecutedStatements());
+        result.put(EXECUTION_TIME_OUTPUT, batchResult.getElapsedTime());
+        return result;
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.BitSet;
+
+/**
+ * Values of one column of a {@link ColumnarTable}. Numeric and boolean columns keep their values in a primitive
+ * array, with a bitmap of the null rows; {@link #get(int)} boxes a value only when it is read.
+ */
+public abstract class Column {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected final BitSet nulls = new BitSet();
+
+    protected int size;
+
+    /**
+     * @param className the class of the values returned by {@link ResultSet#getObject(int)} for the column, as given
+     *        by {@link java.sql.ResultSetMetaData#getColumnClassName(int)}
+     * @return a column storing the values in a primitive array when the class is a boxed primitive
+     */
+    public static Column forClassName(final String className) {
+        if (Integer.class.getName().equals(className)) {
+            return new IntColumn();
+        } else if (Long.class.getName().equals(className)) {
+            return new LongColumn();
+        } else if (Double.class.getName().equals(className)) {
+            return new DoubleColumn();
+        } else if (Float.class.getName().equals(className)) {
+            return new FloatColumn();
+        } else if (Boolean.class.getName().equals(className)) {
+            return new BooleanColumn();
+        }
+        return new ObjectColumn();
+    }
+
+    /**
+     * @param sqlType the {@link java.sql.Types} of the column
+     * @return a {@link LongColumn} for integral types, including decimals without scale that fit in a long, a
+     *         {@link DoubleColumn} for floating-point types, an {@link ObjectColumn} otherwise
+     */
+    public static Column forNumericType(final int sqlType, final int precision, final int scale) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return new LongColumn();
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleColumn();
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return scale == 0 && precision > 0 && precision <= 18 ? new LongColumn() : new ObjectColumn();
+            default:
+                return new ObjectColumn();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(final int row) {
+        checkIndex(row);
+        return nulls.get(row);
+    }
+
+    /**
+     * @return the value of the row, boxed as {@link ResultSet#getObject(int)} would have returned it
+     */
+    public abstract Object get(int row);
+
+    /**
+     * Appends the value of the column at the given index of the current row of the result set.
+     */
+    public abstract void read(ResultSet resultSet, int columnIndex) throws SQLException;
+
+    /**
+     * @return the estimated size in bytes of the value of the row, see {@link SizeEstimator}
+     */
+    public abstract long sizeOf(int row);
+
+    /**
+     * Removes the last row read, which does not fit in the {@link ResultBudget}.
+     */
+    public void removeLast() {
+        if (size > 0) {
+            size--;
+            nulls.clear(size);
+        }
+    }
+
+    /**
+     * Releases the unused capacity once all the rows are read.
+     */
+    public abstract void trim();
+
+    protected void checkIndex(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    protected static int grow(final int capacity) {
+        return capacity == 0 ? INITIAL_CAPACITY : capacity + (capacity >> 1);
+    }
+
+}
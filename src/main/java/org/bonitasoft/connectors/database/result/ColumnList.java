@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of the values of a {@link Column}, boxed on access. The list is serialized as an {@link ArrayList}.
+ */
+public class ColumnList extends AbstractList<Object> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Column column;
+
+    public ColumnList(final Column column) {
+        this.column = column;
+    }
+
+    public Column getColumn() {
+        return column;
+    }
+
+    /**
+     * @throws UnsupportedOperationException when the values are not stored as longs
+     */
+    public long[] toLongArray() {
+        if (!(column instanceof LongColumn)) {
+            throw new UnsupportedOperationException("Values are not stored as longs");
+        }
+        return ((LongColumn) column).toLongArray();
+    }
+
+    /**
+     * @throws UnsupportedOperationException when the values are not stored as doubles
+     */
+    public double[] toDoubleArray() {
+        if (!(column instanceof DoubleColumn)) {
+            throw new UnsupportedOperationException("Values are not stored as doubles");
+        }
+        return ((DoubleColumn) column).toDoubleArray();
+    }
+
+    @Override
+    public Object get(final int index) {
+        return column.get(index);
+    }
+
+    @Override
+    public int size() {
+        return column.size();
+    }
+
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.bonitasoft.engine.connector.ConnectorException;
+
+/**
+ * Read-only table storing a result set column by column, see {@link Column}. It is a
+ * <code>List&lt;List&lt;Object&gt;&gt;</code> of rows, like the table result output, but rows are views built on
+ * access instead of one list per row held in memory.
+ * <p>
+ * The table is serialized as an {@link ArrayList} of {@link ArrayList} rows, so that a process variable it is
+ * stored in can be read back without this class.
+ */
+public class ColumnarTable extends AbstractList<List<Object>> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Column[] columns;
+
+    private final transient int rowCount;
+
+    public ColumnarTable(final Column[] columns) {
+        this.columns = columns.clone();
+        rowCount = columns.length == 0 ? 0 : columns[0].size();
+        for (final Column column : columns) {
+            if (column.size() != rowCount) {
+                throw new IllegalArgumentException("Columns must have the same size");
+            }
+        }
+    }
+
+    /**
+     * Reads the remaining rows of the result set that fit in the budget, without closing it.
+     */
+    public static ColumnarTable read(final ResultSet resultSet, final ResultBudget budget)
+            throws SQLException, ConnectorException {
+        final ResultSetMetaData metaData = resultSet.getMetaData();
+        final Column[] columns = new Column[metaData.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.forClassName(metaData.getColumnClassName(i + 1));
+            if (columns[i] instanceof ObjectColumn) {
+                columns[i] = new ObjectColumn(
+                        RowMapper.extractor(metaData.getColumnType(i + 1), metaData.getColumnClassName(i + 1)));
+            }
+        }
+        while (resultSet.next() && budget.acceptRow()) {
+            long rowSize = 0;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].read(resultSet, i + 1);
+                rowSize += columns[i].sizeOf(columns[i].size() - 1);
+            }
+            if (!budget.add(rowSize)) {
+                for (final Column column : columns) {
+                    column.removeLast();
+                }
+                break;
+            }
+        }
+        for (final Column column : columns) {
+            column.trim();
+        }
+        return new ColumnarTable(columns);
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * @param index the index of the column, starting at 0
+     */
+    public Column getColumn(final int index) {
+        return columns[index];
+    }
+
+    @Override
+    public List<Object> get(final int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + rowCount);
+        }
+        return new Row(row);
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    private Object writeReplace() {
+        final List<List<Object>> rows = new ArrayList<>(rowCount);
+        for (final List<Object> row : this) {
+            rows.add(new ArrayList<>(row));
+        }
+        return rows;
+    }
+
+    private final class Row extends AbstractList<Object> implements RandomAccess {
+
+        private final int index;
+
+        private Row(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Object get(final int column) {
+            return columns[column].get(index);
+        }
+
+        @Override
+        public int size() {
+            return columns.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,1411 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import org.bonitasoft.engine.connector.ConnectorException;
+
+/**
+ * Read-only, scrollable {@link ResultSet} holding a copy of the rows of another result set, so that it stays
+ * readable once the statement and the connection are closed. It is serializable, which lets it be stored in a process
+ * variable.
+ * <p>
+ * The rows are read in one forward pass by {@link #fill(ResultSet, RowMapper, ResultBudget)} into a single array,
+ * row after row. LOB columns hold {@link LobHandle}s, whose content is only loaded in the heap by the getters
+ * returning a string or a byte array. Temporal values are kept as returned by the driver, so
+ * the Calendar variants of the getters ignore their calendar.
+ */
+public class DetachedResultSet implements ResultSet, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_ROWS = 16;
+
+    private final DetachedResultSetMetaData metaData;
+
+    private final Object[] values;
+
+    private final int columnCount;
+
+    private final int rowCount;
+
+    private transient Map<String, Integer> columnIndexes;
+
+    private int row;
+
+    private boolean wasNull;
+
+    private boolean closed;
+
+    private int fetchSize;
+
+    private int fetchDirection = FETCH_FORWARD;
+
+    DetachedResultSet(final DetachedResultSetMetaData metaData, final Object[] values, final int rowCount) {
+        this.metaData = metaData;
+        this.values = values;
+        columnCount = metaData.getColumnCount();
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Reads the remaining rows of the result set that fit in the budget, without closing it.
+     */
+    public static DetachedResultSet fill(final ResultSet resultSet, final RowMapper rowMapper,
+            final ResultBudget budget) throws SQLException, ConnectorException {
+        final DetachedResultSetMetaData metaData = new DetachedResultSetMetaData(resultSet.getMetaData());
+        final int columnCount = metaData.getColumnCount();
+        Object[] values = new Object[columnCount * INITIAL_ROWS];
+        int rows = 0;
+        while (resultSet.next() && budget.acceptRow()) {
+            final int start = rows * columnCount;
+            if (start + columnCount > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length + (values.length >> 1), start + columnCount));
+            }
+            long rowSize = 0;
+            for (int i = 0; i < columnCount; i++) {
+                final Object value = detach(rowMapper.getValue(resultSet, i + 1));
+                values[start + i] = value;
+                rowSize += SizeEstimator.REFERENCE + SizeEstimator.estimate(value);
+            }
+            if (!budget.add(rowSize)) {
+                break;
+            }
+            rows++;
+        }
+        final DetachedResultSet detached = new DetachedResultSet(metaData,
+                Arrays.copyOf(values, rows * columnCount), rows);
+        detached.fetchSize = resultSet.getFetchSize();
+        return detached;
+    }
+
+    private static Object detach(final Object value) throws SQLException {
+        if (value instanceof Clob) {
+            final Clob clob = (Clob) value;
+            try {
+                return clob.getSubString(1, (int) clob.length());
+            } finally {
+                clob.free();
+            }
+        } else if (value instanceof Blob) {
+            final Blob blob = (Blob) value;
+            try {
+                return blob.getBytes(1, (int) blob.length());
+            } finally {
+                blob.free();
+            }
+        } else if (value instanceof SQLXML) {
+            return ((SQLXML) value).getString();
+        } else if (value instanceof Array) {
+            return ((Array) value).getArray();
+        } else if (value instanceof Struct) {
+            return ((Struct) value).getAttributes();
+        }
+        return value;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    // Navigation
+
+    @Override
+    public boolean next() throws SQLException {
+        return moveTo(row + 1);
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+        return moveTo(row - 1);
+    }
+
+    @Override
+    public boolean first() throws SQLException {
+        return moveTo(1);
+    }
+
+    @Override
+    public boolean last() throws SQLException {
+        return moveTo(rowCount);
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        moveTo(0);
+    }
+
+    @Override
+    public void afterLast() throws SQLException {
+        moveTo(rowCount + 1);
+    }
+
+    @Override
+    public boolean absolute(final int position) throws SQLException {
+        if (position >= 0) {
+            return moveTo(position);
+        }
+        return moveTo(rowCount + 1 + position);
+    }
+
+    @Override
+    public boolean relative(final int rows) throws SQLException {
+        return moveTo(row + rows);
+    }
+
+    private boolean moveTo(final int target) throws SQLException {
+        checkOpen();
+        row = Math.max(0, Math.min(target, rowCount + 1));
+        return row >= 1 && row <= rowCount;
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException {
+        checkOpen();
+        return row == 0 && rowCount > 0;
+    }
+
+    @Override
+    public boolean isAfterLast() throws SQLException {
+        checkOpen();
+        return row == rowCount + 1 && rowCount > 0;
+    }
+
+    @Override
+    public boolean isFirst() throws SQLException {
+        checkOpen();
+        return row == 1 && rowCount > 0;
+    }
+
+    @Override
+    public boolean isLast() throws SQLException {
+        checkOpen();
+        return row == rowCount && rowCount > 0;
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        checkOpen();
+        return row >= 1 && row <= rowCount ? row : 0;
+    }
+
+    // Values
+
+    @Override
+    public boolean wasNull() throws SQLException {
+        checkOpen();
+        return wasNull;
+    }
+
+    @Override
+    public Object getObject(final int columnIndex) throws SQLException {
+        checkOpen();
+        if (row < 1 || row > rowCount) {
+            throw new SQLException("No current row");
+        }
+        if (columnIndex < 1 || columnIndex > columnCount) {
+            throw new SQLException("Invalid column index " + columnIndex);
+        }
+        final Object value = values[(row - 1) * columnCount + columnIndex - 1];
+        wasNull = value == null;
+        return value;
+    }
+
+    @Override
+    public String getString(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null) {
+            return null;
+        } else if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        } else if (value instanceof LobHandle) {
+            try {
+                return ((LobHandle) value).getString();
+            } catch (final IOException e) {
+                throw new SQLException("Unable to read LOB of column " + columnIndex, e);
+            }
+        }
+        return value.toString();
+    }
+
+    @Override
+    public boolean getBoolean(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        final String string = value.toString().trim();
+        return "1".equals(string) || "true".equalsIgnoreCase(string) || "y".equalsIgnoreCase(string)
+                || "yes".equalsIgnoreCase(string);
+    }
+
+    @Override
+    public byte getByte(final int columnIndex) throws SQLException {
+        final Number value = getNumber(columnIndex);
+        return value == null ? 0 : value.byteValue();
+    }
+
+    @Override
+    public short getShort(final int columnIndex) throws SQLException {
+        final Number value = getNumber(columnIndex);
+        return value == null ? 0 : value.shortValue();
+    }
+
+    @Override
+    public int getInt(final int columnIndex) throws SQLException {
+        final Number value = getNumber(columnIndex);
+        return value == null ? 0 : value.intValue();
+    }
+
+    @Override
+    public long getLong(final int columnIndex) throws SQLException {
+        final Number value = getNumber(columnIndex);
+        return value == null ? 0 : value.longValue();
+    }
+
+    @Override
+    public float getFloat(final int columnIndex) throws SQLException {
+        final Number value = getNumber(columnIndex);
+        return value == null ? 0 : value.floatValue();
+    }
+
+    @Override
+    public double getDouble(final int columnIndex) throws SQLException {
+        final Number value = getNumber(columnIndex);
+        return value == null ? 0 : value.doubleValue();
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(final int columnIndex) throws SQLException {
+        final Number value = getNumber(columnIndex);
+        if (value == null || value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(value.doubleValue());
+        }
+        return BigDecimal.valueOf(value.longValue());
+    }
+
+    /**
+     * @deprecated use {@link #getBigDecimal(int)}
+     */
+    @Override
+    @Deprecated
+    public BigDecimal getBigDecimal(final int columnIndex, final int scale) throws SQLException {
+        final BigDecimal value = getBigDecimal(columnIndex);
+        return value == null ? null : value.setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    private Number getNumber(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null || value instanceof Number) {
+            return (Number) value;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (final NumberFormatException e) {
+            throw new SQLException("Value of column " + columnIndex + " is not a number: " + value, e);
+        }
+    }
+
+    @Override
+    public byte[] getBytes(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null || value instanceof byte[]) {
+            return (byte[]) value;
+        } else if (value instanceof LobHandle) {
+            try {
+                return ((LobHandle) value).getBytes();
+            } catch (final IOException e) {
+                throw new SQLException("Unable to read LOB of column " + columnIndex, e);
+            }
+        }
+        throw conversionError(columnIndex, value, byte[].class);
+    }
+
+    @Override
+    public Date getDate(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null || value instanceof Date) {
+            return (Date) value;
+        } else if (value instanceof java.util.Date) {
+            return new Date(((java.util.Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            return Date.valueOf((LocalDate) value);
+        } else if (value instanceof LocalDateTime) {
+            return Date.valueOf(((LocalDateTime) value).toLocalDate());
+        }
+        try {
+            return Date.valueOf(value.toString().trim());
+        } catch (final IllegalArgumentException e) {
+            throw conversionError(columnIndex, value, Date.class);
+        }
+    }
+
+    @Override
+    public Time getTime(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null || value instanceof Time) {
+            return (Time) value;
+        } else if (value instanceof java.util.Date) {
+            return new Time(((java.util.Date) value).getTime());
+        } else if (value instanceof LocalTime) {
+            return Time.valueOf((LocalTime) value);
+        }
+        try {
+            return Time.valueOf(value.toString().trim());
+        } catch (final IllegalArgumentException e) {
+            throw conversionError(columnIndex, value, Time.class);
+        }
+    }
+
+    @Override
+    public Timestamp getTimestamp(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null || value instanceof Timestamp) {
+            return (Timestamp) value;
+        } else if (value instanceof java.util.Date) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        } else if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value);
+        } else if (value instanceof LocalDate) {
+            return Timestamp.valueOf(((LocalDate) value).atStartOfDay());
+        }
+        try {
+            return Timestamp.valueOf(value.toString().trim());
+        } catch (final IllegalArgumentException e) {
+            throw conversionError(columnIndex, value, Timestamp.class);
+        }
+    }
+
+    @Override
+    public Date getDate(final int columnIndex, final Calendar cal) throws SQLException {
+        return getDate(columnIndex);
+    }
+
+    @Override
+    public Time getTime(final int columnIndex, final Calendar cal) throws SQLException {
+        return getTime(columnIndex);
+    }
+
+    @Override
+    public Timestamp getTimestamp(final int columnIndex, final Calendar cal) throws SQLException {
+        return getTimestamp(columnIndex);
+    }
+
+    @Override
+    public InputStream getAsciiStream(final int columnIndex) throws SQLException {
+        final String value = getString(columnIndex);
+        return value == null ? null : new ByteArrayInputStream(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @deprecated use {@link #getCharacterStream(int)}
+     */
+    @Override
+    @Deprecated
+    public InputStream getUnicodeStream(final int columnIndex) throws SQLException {
+        final String value = getString(columnIndex);
+        return value == null ? null : new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_16BE));
+    }
+
+    @Override
+    public InputStream getBinaryStream(final int columnIndex) throws SQLException {
+        final Object lob = getObject(columnIndex);
+        if (lob instanceof LobHandle) {
+            try {
+                return ((LobHandle) lob).getInputStream();
+            } catch (final IOException e) {
+                throw new SQLException("Unable to read LOB of column " + columnIndex, e);
+            }
+        }
+        final byte[] value = getBytes(columnIndex);
+        return value == null ? null : new ByteArrayInputStream(value);
+    }
+
+    @Override
+    public Reader getCharacterStream(final int columnIndex) throws SQLException {
+        final Object lob = getObject(columnIndex);
+        if (lob instanceof LobHandle) {
+            try {
+                return ((LobHandle) lob).getReader();
+            } catch (final IOException e) {
+                throw new SQLException("Unable to read LOB of column " + columnIndex, e);
+            }
+        }
+        final String value = getString(columnIndex);
+        return value == null ? null : new StringReader(value);
+    }
+
+    @Override
+    public Reader getNCharacterStream(final int columnIndex) throws SQLException {
+        return getCharacterStream(columnIndex);
+    }
+
+    @Override
+    public String getNString(final int columnIndex) throws SQLException {
+        return getString(columnIndex);
+    }
+
+    @Override
+    public Clob getClob(final int columnIndex) throws SQLException {
+        final String value = getString(columnIndex);
+        return value == null ? null : new SerialClob(value.toCharArray());
+    }
+
+    @Override
+    public NClob getNClob(final int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("NClob values are read as strings, use getString");
+    }
+
+    @Override
+    public Blob getBlob(final int columnIndex) throws SQLException {
+        final byte[] value = getBytes(columnIndex);
+        return value == null ? null : new SerialBlob(value);
+    }
+
+    @Override
+    public URL getURL(final int columnIndex) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null || value instanceof URL) {
+            return (URL) value;
+        }
+        try {
+            return new URL(value.toString());
+        } catch (final MalformedURLException e) {
+            throw conversionError(columnIndex, value, URL.class);
+        }
+    }
+
+    @Override
+    public Object getObject(final int columnIndex, final Map<String, Class<?>> map) throws SQLException {
+        return getObject(columnIndex);
+    }
+
+    @Override
+    public <T> T getObject(final int columnIndex, final Class<T> type) throws SQLException {
+        final Object value = getObject(columnIndex);
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        final Object converted;
+        if (type == String.class) {
+            converted = getString(columnIndex);
+        } else if (type == Integer.class) {
+            converted = getInt(columnIndex);
+        } else if (type == Long.class) {
+            converted = getLong(columnIndex);
+        } else if (type == Double.class) {
+            converted = getDouble(columnIndex);
+        } else if (type == Float.class) {
+            converted = getFloat(columnIndex);
+        } else if (type == Short.class) {
+            converted = getShort(columnIndex);
+        } else if (type == Byte.class) {
+            converted = getByte(columnIndex);
+        } else if (type == Boolean.class) {
+            converted = getBoolean(columnIndex);
+        } else if (type == BigDecimal.class) {
+            converted = getBigDecimal(columnIndex);
+        } else if (type == Date.class) {
+            converted = getDate(columnIndex);
+        } else if (type == Time.class) {
+            converted = getTime(columnIndex);
+        } else if (type == Timestamp.class) {
+            converted = getTimestamp(columnIndex);
+        } else if (type == LocalDate.class) {
+            converted = getDate(columnIndex).toLocalDate();
+        } else if (type == LocalTime.class) {
+            converted = getTime(columnIndex).toLocalTime();
+        } else if (type == LocalDateTime.class) {
+            converted = getTimestamp(columnIndex).toLocalDateTime();
+        } else {
+            throw conversionError(columnIndex, value, type);
+        }
+        return type.cast(converted);
+    }
+
+    private static SQLException conversionError(final int columnIndex, final Object value, final Class<?> type) {
+        return new SQLException("Value of column " + columnIndex + " of type " + value.getClass().getName()
+                + " can't be converted to " + type.getName());
+    }
+
+    // Values by label
+
+    @Override
+    public int findColumn(final String columnLabel) throws SQLException {
+        checkOpen();
+        if (columnIndexes == null) {
+            final Map<String, Integer> indexes = new HashMap<>();
+            for (int i = columnCount; i >= 1; i--) {
+                indexes.put(metaData.getColumnName(i).toUpperCase(Locale.ROOT), i);
+            }
+            for (int i = columnCount; i >= 1; i--) {
+                indexes.put(metaData.getColumnLabel(i).toUpperCase(Locale.ROOT), i);
+            }
+            columnIndexes = indexes;
+        }
+        final Integer index = columnLabel == null ? null : columnIndexes.get(columnLabel.toUpperCase(Locale.ROOT));
+        if (index == null) {
+            throw new SQLException("Unknown column " + columnLabel);
+        }
+        return index;
+    }
+
+    @Override
+    public String getString(final String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    @Override
+    public boolean getBoolean(final String columnLabel) throws SQLException {
+        return getBoolean(findColumn(columnLabel));
+    }
+
+    @Override
+    public byte getByte(final String columnLabel) throws SQLException {
+        return getByte(findColumn(columnLabel));
+    }
+
+    @Override
+    public short getShort(final String columnLabel) throws SQLException {
+        return getShort(findColumn(columnLabel));
+    }
+
+    @Override
+    public int getInt(final String columnLabel) throws SQLException {
+        return getInt(findColumn(columnLabel));
+    }
+
+    @Override
+    public long getLong(final String columnLabel) throws SQLException {
+        return getLong(findColumn(columnLabel));
+    }
+
+    @Override
+    public float getFloat(final String columnLabel) throws SQLException {
+        return getFloat(findColumn(columnLabel));
+    }
+
+    @Override
+    public double getDouble(final String columnLabel) throws SQLException {
+        return getDouble(findColumn(columnLabel));
+    }
+
+    /**
+     * @deprecated use {@link #getBigDecimal(String)}
+     */
+    @Override
+    @Deprecated
+    public BigDecimal getBigDecimal(final String columnLabel, final int scale) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel), scale);
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(final String columnLabel) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel));
+    }
+
+    @Override
+    public byte[] getBytes(final String columnLabel) throws SQLException {
+        return getBytes(findColumn(columnLabel));
+    }
+
+    @Override
+    public Date getDate(final String columnLabel) throws SQLException {
+        return getDate(findColumn(columnLabel));
+    }
+
+    @Override
+    public Time getTime(final String columnLabel) throws SQLException {
+        return getTime(findColumn(columnLabel));
+    }
+
+    @Override
+    public Timestamp getTimestamp(final String columnLabel) throws SQLException {
+        return getTimestamp(findColumn(columnLabel));
+    }
+
+    @Override
+    public Date getDate(final String columnLabel, final Calendar cal) throws SQLException {
+        return getDate(findColumn(columnLabel));
+    }
+
+    @Override
+    public Time getTime(final String columnLabel, final Calendar cal) throws SQLException {
+        return getTime(findColumn(columnLabel));
+    }
+
+    @Override
+    public Timestamp getTimestamp(final String columnLabel, final Calendar cal) throws SQLException {
+        return getTimestamp(findColumn(columnLabel));
+    }
+
+    @Override
+    public InputStream getAsciiStream(final String columnLabel) throws SQLException {
+        return getAsciiStream(findColumn(columnLabel));
+    }
+
+    /**
+     * @deprecated use {@link #getCharacterStream(String)}
+     */
+    @Override
+    @Deprecated
+    public InputStream getUnicodeStream(final String columnLabel) throws SQLException {
+        return getUnicodeStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public InputStream getBinaryStream(final String columnLabel) throws SQLException {
+        return getBinaryStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public Reader getCharacterStream(final String columnLabel) throws SQLException {
+        return getCharacterStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public Reader getNCharacterStream(final String columnLabel) throws SQLException {
+        return getNCharacterStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public String getNString(final String columnLabel) throws SQLException {
+        return getNString(findColumn(columnLabel));
+    }
+
+    @Override
+    public Clob getClob(final String columnLabel) throws SQLException {
+        return getClob(findColumn(columnLabel));
+    }
+
+    @Override
+    public NClob getNClob(final String columnLabel) throws SQLException {
+        return getNClob(findColumn(columnLabel));
+    }
+
+    @Override
+    public Blob getBlob(final String columnLabel) throws SQLException {
+        return getBlob(findColumn(columnLabel));
+    }
+
+    @Override
+    public URL getURL(final String columnLabel) throws SQLException {
+        return getURL(findColumn(columnLabel));
+    }
+
+    @Override
+    public Object getObject(final String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    @Override
+    public Object getObject(final String columnLabel, final Map<String, Class<?>> map) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    @Override
+    public <T> T getObject(final String columnLabel, final Class<T> type) throws SQLException {
+        return getObject(findColumn(columnLabel), type);
+    }
+
+    // Result set properties
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        checkOpen();
+        return metaData;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int getType() throws SQLException {
+        checkOpen();
+        return TYPE_SCROLL_INSENSITIVE;
+    }
+
+    @Override
+    public int getConcurrency() throws SQLException {
+        checkOpen();
+        return CONCUR_READ_ONLY;
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        checkOpen();
+        return HOLD_CURSORS_OVER_COMMIT;
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        checkOpen();
+        return fetchDirection;
+    }
+
+    @Override
+    public void setFetchDirection(final int direction) throws SQLException {
+        checkOpen();
+        if (direction != FETCH_FORWARD && direction != FETCH_REVERSE && direction != FETCH_UNKNOWN) {
+            throw new SQLException("Invalid fetch direction " + direction);
+        }
+        fetchDirection = direction;
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        checkOpen();
+        return fetchSize;
+    }
+
+    @Override
+    public void setFetchSize(final int rows) throws SQLException {
+        checkOpen();
+        if (rows < 0) {
+            throw new SQLException("Fetch size can't be negative");
+        }
+        fetchSize = rows;
+    }
+
+    /**
+     * @return null, the statement the rows come from is closed
+     */
+    @Override
+    public Statement getStatement() throws SQLException {
+        checkOpen();
+        return null;
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        checkOpen();
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public boolean rowUpdated() throws SQLException {
+        checkOpen();
+        return false;
+    }
+
+    @Override
+    public boolean rowInserted() throws SQLException {
+        checkOpen();
+        return false;
+    }
+
+    @Override
+    public boolean rowDeleted() throws SQLException {
+        checkOpen();
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Result set is closed");
+        }
+    }
+
+    // Unsupported operations of a read-only detached result set
+
+    private static SQLFeatureNotSupportedException readOnly() {
+        return new SQLFeatureNotSupportedException("Detached result set is read-only");
+    }
+
+    @Override
+    public String getCursorName() throws SQLException {
+        throw new SQLFeatureNotSupportedException("Detached result set has no cursor");
+    }
+
+    @Override
+    public Ref getRef(final int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Ref values are not supported");
+    }
+
+    @Override
+    public Ref getRef(final String columnLabel) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Ref values are not supported");
+    }
+
+    @Override
+    public Array getArray(final int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Arrays are read as Object[], use getObject");
+    }
+
+    @Override
+    public Array getArray(final String columnLabel) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Arrays are read as Object[], use getObject");
+    }
+
+    @Override
+    public RowId getRowId(final int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("RowId values are not supported");
+    }
+
+    @Override
+    public RowId getRowId(final String columnLabel) throws SQLException {
+        throw new SQLFeatureNotSupportedException("RowId values are not supported");
+    }
+
+    @Override
+    public SQLXML getSQLXML(final int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("XML values are read as strings, use getString");
+    }
+
+    @Override
+    public SQLXML getSQLXML(final String columnLabel) throws SQLException {
+        throw new SQLFeatureNotSupportedException("XML values are read as strings, use getString");
+    }
+
+    @Override
+    public void refreshRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void insertRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void cancelRowUpdates() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void moveToInsertRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void moveToCurrentRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateArray(final int columnIndex, final Array x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateArray(final String columnLabel, final Array x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(final int columnIndex, final InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(final int columnIndex, final InputStream inputStream, final int length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(final int columnIndex, final InputStream inputStream, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(final String columnLabel, final InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(final String columnLabel, final InputStream inputStream, final int length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(final String columnLabel, final InputStream inputStream, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBigDecimal(final int columnIndex, final java.math.BigDecimal x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBigDecimal(final String columnLabel, final java.math.BigDecimal x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(final int columnIndex, final InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(final int columnIndex, final InputStream inputStream, final int length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(final int columnIndex, final InputStream inputStream, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(final String columnLabel, final InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(final String columnLabel, final InputStream inputStream, final int length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(final String columnLabel, final InputStream inputStream, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(final int columnIndex, final InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(final int columnIndex, final InputStream inputStream, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(final int columnIndex, final Blob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(final String columnLabel, final InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(final String columnLabel, final InputStream inputStream, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(final String columnLabel, final Blob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBoolean(final int columnIndex, final boolean x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBoolean(final String columnLabel, final boolean x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateByte(final int columnIndex, final byte x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateByte(final String columnLabel, final byte x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBytes(final int columnIndex, final byte[] x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBytes(final String columnLabel, final byte[] x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(final int columnIndex, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(final int columnIndex, final Reader reader, final int length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(final int columnIndex, final Reader reader, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(final String columnLabel, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(final String columnLabel, final Reader reader, final int length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(final String columnLabel, final Reader reader, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(final int columnIndex, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(final int columnIndex, final Reader reader, final long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(final int columnIndex, final Clob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(final String columnLabel, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(final String columnLabel, final Reader reader, final long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(final String columnLabel, final Clob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDate(final int columnIndex, final Date x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDate(final String columnLabel, final Date x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDouble(final int columnIndex, final double x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDouble(final String columnLabel, final double x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateFloat(final int columnIndex, final float x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateFloat(final String columnLabel, final float x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateInt(final int columnIndex, final int x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateInt(final String columnLabel, final int x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateLong(final int columnIndex, final long x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateLong(final String columnLabel, final long x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(final int columnIndex, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(final int columnIndex, final Reader reader, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(final String columnLabel, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(final String columnLabel, final Reader reader, final long length)
+            throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(final int columnIndex, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(final int columnIndex, final Reader reader, final long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(final int columnIndex, final NClob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(final String columnLabel, final Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(final String columnLabel, final Reader reader, final long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(final String columnLabel, final NClob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNString(final int columnIndex, final String x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNString(final String columnLabel, final String x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNull(final int columnIndex) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNull(final String columnLabel) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(final int columnIndex, final Object x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(final int columnIndex, final Object x, final int scaleOrLength) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(final String columnLabel, final Object x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(final String columnLabel, final Object x, final int scaleOrLength) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRef(final int columnIndex, final Ref x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRef(final String columnLabel, final Ref x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRowId(final int columnIndex, final RowId x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRowId(final String columnLabel, final RowId x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateSQLXML(final int columnIndex, final SQLXML x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateSQLXML(final String columnLabel, final SQLXML x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateShort(final int columnIndex, final short x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateShort(final String columnLabel, final short x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateString(final int columnIndex, final String x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateString(final String columnLabel, final String x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTime(final int columnIndex, final Time x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTime(final String columnLabel, final Time x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTimestamp(final int columnIndex, final Timestamp x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTimestamp(final String columnLabel, final Timestamp x) throws SQLException {
+        throw readOnly();
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.io.Serializable;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Copy of the {@link ResultSetMetaData} of a result set, kept by {@link DetachedResultSet} once the result set is
+ * closed.
+ */
+public class DetachedResultSetMetaData implements ResultSetMetaData, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] labels;
+    private final String[] names;
+    private final int[] types;
+    private final String[] typeNames;
+    private final String[] classNames;
+    private final int[] precisions;
+    private final int[] scales;
+    private final int[] nullables;
+    private final int[] displaySizes;
+    private final boolean[] signed;
+    private final boolean[] autoIncrement;
+    private final boolean[] caseSensitive;
+    private final String[] tableNames;
+    private final String[] schemaNames;
+    private final String[] catalogNames;
+
+    public DetachedResultSetMetaData(final ResultSetMetaData metaData) throws SQLException {
+        final int columnCount = metaData.getColumnCount();
+        labels = new String[columnCount];
+        names = new String[columnCount];
+        types = new int[columnCount];
+        typeNames = new String[columnCount];
+        classNames = new String[columnCount];
+        precisions = new int[columnCount];
+        scales = new int[columnCount];
+        nullables = new int[columnCount];
+        displaySizes = new int[columnCount];
+        signed = new boolean[columnCount];
+        autoIncrement = new boolean[columnCount];
+        caseSensitive = new boolean[columnCount];
+        tableNames = new String[columnCount];
+        schemaNames = new String[columnCount];
+        catalogNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            final int column = i + 1;
+            labels[i] = metaData.getColumnLabel(column);
+            names[i] = metaData.getColumnName(column);
+            types[i] = metaData.getColumnType(column);
+            typeNames[i] = metaData.getColumnTypeName(column);
+            classNames[i] = metaData.getColumnClassName(column);
+            precisions[i] = metaData.getPrecision(column);
+            scales[i] = metaData.getScale(column);
+            nullables[i] = metaData.isNullable(column);
+            displaySizes[i] = metaData.getColumnDisplaySize(column);
+            signed[i] = metaData.isSigned(column);
+            autoIncrement[i] = metaData.isAutoIncrement(column);
+            caseSensitive[i] = metaData.isCaseSensitive(column);
+            tableNames[i] = metaData.getTableName(column);
+            schemaNames[i] = metaData.getSchemaName(column);
+            catalogNames[i] = metaData.getCatalogName(column);
+        }
+    }
+
+    @Override
+    public int getColumnCount() {
+        return labels.length;
+    }
+
+    @Override
+    public boolean isAutoIncrement(final int column) throws SQLException {
+        return autoIncrement[index(column)];
+    }
+
+    @Override
+    public boolean isCaseSensitive(final int column) throws SQLException {
+        return caseSensitive[index(column)];
+    }
+
+    @Override
+    public boolean isSearchable(final int column) throws SQLException {
+        index(column);
+        return false;
+    }
+
+    @Override
+    public boolean isCurrency(final int column) throws SQLException {
+        index(column);
+        return false;
+    }
+
+    @Override
+    public int isNullable(final int column) throws SQLException {
+        return nullables[index(column)];
+    }
+
+    @Override
+    public boolean isSigned(final int column) throws SQLException {
+        return signed[index(column)];
+    }
+
+    @Override
+    public int getColumnDisplaySize(final int column) throws SQLException {
+        return displaySizes[index(column)];
+    }
+
+    @Override
+    public String getColumnLabel(final int column) throws SQLException {
+        return labels[index(column)];
+    }
+
+    @Override
+    public String getColumnName(final int column) throws SQLException {
+        return names[index(column)];
+    }
+
+    @Override
+    public String getSchemaName(final int column) throws SQLException {
+        return schemaNames[index(column)];
+    }
+
+    @Override
+    public int getPrecision(final int column) throws SQLException {
+        return precisions[index(column)];
+    }
+
+    @Override
+    public int getScale(final int column) throws SQLException {
+        return scales[index(column)];
+    }
+
+    @Override
+    public String getTableName(final int column) throws SQLException {
+        return tableNames[index(column)];
+    }
+
+    @Override
+    public String getCatalogName(final int column) throws SQLException {
+        return catalogNames[index(column)];
+    }
+
+    @Override
+    public int getColumnType(final int column) throws SQLException {
+        return types[index(column)];
+    }
+
+    @Override
+    public String getColumnTypeName(final int column) throws SQLException {
+        return typeNames[index(column)];
+    }
+
+    @Override
+    public boolean isReadOnly(final int column) throws SQLException {
+        index(column);
+        return true;
+    }
+
+    @Override
+    public boolean isWritable(final int column) throws SQLException {
+        index(column);
+        return false;
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(final int column) throws SQLException {
+        index(column);
+        return false;
+    }
+
+    @Override
+    public String getColumnClassName(final int column) throws SQLException {
+        return classNames[index(column)];
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private int index(final int column) throws SQLException {
+        if (column < 1 || column > labels.length) {
+            throw new SQLException("Invalid column index " + column);
+        }
+        return column - 1;
+    }
+
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content of a BLOB or CLOB value, read through {@link ResultSet#getBinaryStream(int)} or
+ * {@link ResultSet#getCharacterStream(int)}: unlike the locators returned by {@link ResultSet#getObject(int)}, it stays
+ * readable once the connection is released.
+ * <p>
+ * Content up to {@value #DEFAULT_INLINE_LIMIT} bytes, or the value of the {@value #INLINE_LIMIT_PROPERTY} system
+ * property, is kept in the heap. Bigger content is streamed to a temporary file, in the directory set by
+ * {@value SpilledTable#DIRECTORY_PROPERTY}, and read back on demand; the file is deleted by {@link #delete()} or once
+ * the handle is garbage collected. Character content is stored encoded in UTF-8.
+ * <p>
+ * Serializing a handle, e.g. to store it in a process variable, copies its content in chunks, without loading it in
+ * the heap; big content is written back to a temporary file when it is deserialized.
+ */
+public final class LobHandle implements Serializable {
+
+    public static final String INLINE_LIMIT_PROPERTY = "org.bonitasoft.connectors.database.lobInlineLimit";
+
+    public static final int DEFAULT_INLINE_LIMIT = 64 * 1024;
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(LobHandle.class.getName());
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final boolean character;
+
+    private transient long length;
+
+    private transient long size;
+
+    private transient byte[] content;
+
+    private transient Path file;
+
+    private transient Cleaner.Cleanable cleanable;
+
+    /**
+     * Holds the handle owning the file of a handle decoded by {@link #readReference(ByteBuffer, Object)}, so that the
+     * file is not deleted while this one is reachable.
+     */
+    private transient Object owner;
+
+    private LobHandle(final boolean character, final long length, final long size, final byte[] content,
+            final Path file, final boolean ownsFile) {
+        this.character = character;
+        this.length = length;
+        this.size = size;
+        this.content = content;
+        this.file = file;
+        cleanable = ownsFile ? CLEANER.register(this, new TemporaryFile(file)) : null;
+    }
+
+    /**
+     * @return the content of the BLOB column of the current row, null when it is null
+     */
+    public static LobHandle readBinary(final ResultSet resultSet, final int columnIndex) throws SQLException {
+        try (InputStream in = resultSet.getBinaryStream(columnIndex)) {
+            if (in == null) {
+                return null;
+            }
+            final Sink sink = new Sink(getInlineLimit());
+            try {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    sink.write(buffer, 0, read);
+                }
+                sink.close();
+            } catch (final IOException | RuntimeException e) {
+                sink.discard();
+                throw e;
+            }
+            return sink.toHandle(false, sink.size);
+        } catch (final IOException e) {
+            throw new SQLException("Unable to read binary content of column " + columnIndex, e);
+        }
+    }
+
+    /**
+     * @return the content of the CLOB column of the current row, null when it is null
+     */
+    public static LobHandle readCharacters(final ResultSet resultSet, final int columnIndex) throws SQLException {
+        try (Reader in = resultSet.getCharacterStream(columnIndex)) {
+            if (in == null) {
+                return null;
+            }
+            final Sink sink = new Sink(getInlineLimit());
+            long length = 0;
+            try (Writer out = new OutputStreamWriter(sink, StandardCharsets.UTF_8)) {
+                final char[] buffer = new char[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                    length += read;
+                }
+            } catch (final IOException | RuntimeException e) {
+                sink.discard();
+                throw e;
+            }
+            return sink.toHandle(true, length);
+        } catch (final IOException e) {
+            throw new SQLException("Unable to read character content of column " + columnIndex, e);
+        }
+    }
+
+    private static int getInlineLimit() {
+        return Integer.getInteger(INLINE_LIMIT_PROPERTY, DEFAULT_INLINE_LIMIT);
+    }
+
+    /**
+     * @return whether the value comes from a CLOB, rather than a BLOB
+     */
+    public boolean isCharacter() {
+        return character;
+    }
+
+    /**
+     * @return the number of characters of a CLOB, or of bytes of a BLOB
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return the number of bytes of the stored content
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return whether the content is held in the heap, rather than in a file
+     */
+    public boolean isInline() {
+        return content != null;
+    }
+
+    /**
+     * @return the file holding the content, null when it is inline
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        return content != null ? new ByteArrayInputStream(content) : Files.newInputStream(file);
+    }
+
+    public Reader getReader() throws IOException {
+        return new InputStreamReader(getInputStream(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Loads the whole content in the heap, prefer {@link #getInputStream()} for content stored in a file.
+     */
+    public byte[] getBytes() throws IOException {
+        return content != null ? content.clone() : Files.readAllBytes(file);
+    }
+
+    /**
+     * Loads the whole content in the heap, prefer {@link #getReader()} for content stored in a file.
+     */
+    public String getString() throws IOException {
+        return new String(content != null ? content : Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the file holding the content. The handle can't be read anymore.
+     */
+    public void delete() {
+        if (cleanable != null) {
+            cleanable.clean();
+        }
+    }
+
+    /**
+     * @return the estimated heap used by the handle and its inline content
+     */
+    long getHeapSize() {
+        return 48L + (content != null ? content.length : 0);
+    }
+
+    /**
+     * Writes a reference to the content, for {@link RowCodec}: inline content is copied, content stored in a file is
+     * referenced by its path. The file is still owned by this handle.
+     */
+    void writeReference(final DataOutput out) throws IOException {
+        out.writeBoolean(character);
+        out.writeLong(length);
+        out.writeLong(size);
+        out.writeBoolean(content != null);
+        if (content != null) {
+            out.write(content);
+        } else {
+            final byte[] path = file.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(path.length);
+            out.write(path);
+        }
+    }
+
+    /**
+     * @param owner object keeping the handle that owns the file reachable, e.g. the table the reference was read from
+     * @return a handle on the content referenced by {@link #writeReference(DataOutput)}, which does not own its file
+     */
+    static LobHandle readReference(final ByteBuffer in, final Object owner) {
+        final boolean character = in.get() != 0;
+        final long length = in.getLong();
+        final long size = in.getLong();
+        if (in.get() != 0) {
+            final byte[] content = new byte[(int) size];
+            in.get(content);
+            return new LobHandle(character, length, size, content, null, false);
+        }
+        final byte[] path = new byte[in.getInt()];
+        in.get(path);
+        final LobHandle handle = new LobHandle(character, length, size, null,
+                Paths.get(new String(path, StandardCharsets.UTF_8)), false);
+        handle.owner = owner;
+        return handle;
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeLong(length);
+        out.writeLong(size);
+        try (InputStream in = getInputStream()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        length = in.readLong();
+        size = in.readLong();
+        final Sink sink = new Sink(getInlineLimit());
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = size;
+            while (remaining > 0) {
+                final int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Truncated LOB content");
+                }
+                sink.write(buffer, 0, read);
+                remaining -= read;
+            }
+            sink.close();
+        } catch (final IOException | RuntimeException e) {
+            sink.discard();
+            throw e;
+        }
+        content = sink.file == null ? sink.buffer.toByteArray() : null;
+        file = sink.file;
+        cleanable = file != null ? CLEANER.register(this, new TemporaryFile(file)) : null;
+    }
+
+    @Override
+    public String toString() {
+        return (character ? "CLOB(" + length + " characters)" : "BLOB(" + length + " bytes)");
+    }
+
+    /**
+     * Stream keeping the content in a buffer until it exceeds the inline limit, then in a temporary file.
+     */
+    private static final class Sink extends OutputStream {
+
+        private final int inlineLimit;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private Path file;
+
+        private OutputStream fileOut;
+
+        private long size;
+
+        private Sink(final int inlineLimit) {
+            this.inlineLimit = inlineLimit;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int count) throws IOException {
+            if (fileOut == null && buffer.size() + count > inlineLimit) {
+                final String directory = System.getProperty(SpilledTable.DIRECTORY_PROPERTY,
+                        System.getProperty("java.io.tmpdir"));
+                file = Files.createTempFile(Paths.get(directory), "bonita-db-lob-", ".data");
+                fileOut = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE * 8);
+                buffer.writeTo(fileOut);
+                buffer = null;
+            }
+            (fileOut != null ? fileOut : buffer).write(bytes, offset, count);
+            size += count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) {
+                fileOut.close();
+            }
+        }
+
+        LobHandle toHandle(final boolean character, final long length) {
+            return file == null ? new LobHandle(character, length, size, buffer.toByteArray(), null, false)
+                    : new LobHandle(character, length, size, null, file, true);
+        }
+
+        void discard() {
+            try {
+                close();
+            } catch (final IOException e) {
+                LOGGER.log(Level.FINE, "Error while closing LOB file " + file, e);
+            }
+            if (file != null) {
+                new TemporaryFile(file).run();
+            }
+        }
+
+    }
+
+    /**
+     * File of a handle, deleted by the {@link Cleaner}: it must not reference the handle.
+     */
+    private static final class TemporaryFile implements Runnable {
+
+        private final Path path;
+
+        private TemporaryFile(final Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to delete LOB file " + path, e);
+            }
+        }
+
+    }
+
+}
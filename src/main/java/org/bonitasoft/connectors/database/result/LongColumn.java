@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * {@link Column} of Long values stored in a <code>long[]</code>.
+ */
+public class LongColumn extends Column {
+
+    private long[] values = new long[0];
+
+    @Override
+    public Object get(final int row) {
+        checkIndex(row);
+        return nulls.get(row) ? null : Long.valueOf(values[row]);
+    }
+
+    public long getLong(final int row) {
+        checkIndex(row);
+        return values[row];
+    }
+
+    @Override
+    public void read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+        final long value = resultSet.getLong(columnIndex);
+        add(value, resultSet.wasNull());
+    }
+
+    public void add(final long value, final boolean isNull) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        if (isNull) {
+            nulls.set(size);
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public long sizeOf(final int row) {
+        return 8;
+    }
+
+    @Override
+    public void trim() {
+        if (values.length > size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * @return a copy of the values, null rows holding the default value of the type
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * {@link Column} of the values that have no primitive representation, as returned by
+ * {@link ResultSet#getObject(int)}, or by the given {@link ColumnExtractor}.
+ */
+public class ObjectColumn extends Column {
+
+    private final ColumnExtractor extractor;
+
+    private Object[] values = new Object[0];
+
+    public ObjectColumn() {
+        this(ResultSet::getObject);
+    }
+
+    public ObjectColumn(final ColumnExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public Object get(final int row) {
+        checkIndex(row);
+        return values[row];
+    }
+
+    @Override
+    public void read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+        add(extractor.extract(resultSet, columnIndex));
+    }
+
+    public void add(final Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        if (value == null) {
+            nulls.set(size);
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public long sizeOf(final int row) {
+        return SizeEstimator.REFERENCE + SizeEstimator.estimate(get(row));
+    }
+
+    @Override
+    public void removeLast() {
+        if (size > 0) {
+            values[size - 1] = null;
+        }
+        super.removeLast();
+    }
+
+    @Override
+    public void trim() {
+        if (values.length > size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import org.bonitasoft.engine.connector.ConnectorException;
+
+/**
+ * Limits the number of rows and the estimated size of a result while it is materialized, so that a query returning
+ * far more rows than expected fails, or is truncated, before the engine runs out of memory.
+ */
+public class ResultBudget {
+
+    private final int maxRows;
+
+    private final long maxBytes;
+
+    private final boolean truncate;
+
+    private int rows;
+
+    private long size;
+
+    private boolean truncated;
+
+    /**
+     * @param maxRows maximum number of rows, 0 for no limit
+     * @param maxBytes maximum estimated size in bytes, 0 for no limit
+     * @param truncate whether to stop reading when a limit is reached instead of failing
+     */
+    public ResultBudget(final int maxRows, final long maxBytes, final boolean truncate) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.truncate = truncate;
+    }
+
+    public static ResultBudget unlimited() {
+        return new ResultBudget(0, 0, false);
+    }
+
+    /**
+     * Called when the result set has one more row, before reading it.
+     *
+     * @return false when the row limit is reached and the result is truncated
+     * @throws ConnectorException when the row limit is reached and the result is not truncated
+     */
+    public boolean acceptRow() throws ConnectorException {
+        if (maxRows > 0 && rows >= maxRows) {
+            return exceeded("Result has more than " + maxRows + " rows");
+        }
+        return true;
+    }
+
+    /**
+     * Called once the row is read.
+     *
+     * @return false when the row exceeds the size limit and the result is truncated, without it
+     * @throws ConnectorException when the row exceeds the size limit and the result is not truncated
+     */
+    public boolean add(final long rowSize) throws ConnectorException {
+        if (maxBytes > 0 && size + rowSize > maxBytes) {
+            return exceeded("Result exceeds " + maxBytes + " bytes after " + rows + " rows");
+        }
+        size += rowSize;
+        rows++;
+        return true;
+    }
+
+    /**
+     * Accounts for a row of a result that is bounded by construction, such as a single value, without enforcing the
+     * limits.
+     */
+    public void record(final long rowSize) {
+        size += rowSize;
+        rows++;
+    }
+
+    private boolean exceeded(final String message) throws ConnectorException {
+        if (!truncate) {
+            throw new ConnectorException(message + ", set a higher limit or enable truncation");
+        }
+        truncated = true;
+        return false;
+    }
+
+    /**
+     * @return the number of rows to request from the driver, one more than the limit to detect a truncation, 0 for
+     *         no limit
+     */
+    public int getFetchLimit() {
+        return maxRows > 0 && maxRows < Integer.MAX_VALUE ? maxRows + 1 : 0;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the estimated size in bytes of the rows accepted so far
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of a row: the number of values, then each value as a one byte type tag followed by its
+ * payload. Values of the classes returned by {@link RowMapper} keep their class; other serializable values are
+ * written with Java serialization, and the remaining ones as their string representation. {@link LobHandle}s are
+ * written as a reference to their content, which is only valid as long as the original handle is reachable: the
+ * handles decoded by {@link #read(ByteBuffer, Object)} keep reachable the object holding it.
+ */
+public final class RowCodec {
+
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte FLOAT = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte STRING = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte TIMESTAMP = 9;
+    private static final byte DATE = 10;
+    private static final byte TIME = 11;
+    private static final byte BYTES = 12;
+    private static final byte SERIALIZED = 13;
+    private static final byte LOB = 14;
+
+    private RowCodec() {
+    }
+
+    public static void write(final DataOutput out, final List<?> row) throws IOException {
+        write(out, row, true);
+    }
+
+    /**
+     * @param allowSerialized false to reject the values that would need Java serialization, for rows decoded from
+     *        untrusted input with {@link #read(ByteBuffer, boolean)}
+     * @throws IllegalArgumentException when a value needs Java serialization and it is not allowed
+     */
+    public static void write(final DataOutput out, final List<?> row, final boolean allowSerialized)
+            throws IOException {
+        out.writeInt(row.size());
+        for (final Object value : row) {
+            writeValue(out, value, allowSerialized);
+        }
+    }
+
+    public static byte[] encode(final List<?> row) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, row);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<Object> decode(final byte[] bytes) {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads a row from the position of the buffer, and moves the position after it.
+     */
+    public static List<Object> read(final ByteBuffer in) {
+        return read(in, true);
+    }
+
+    /**
+     * @param allowSerialized false to decode untrusted input, which must not be deserialized
+     * @throws IllegalArgumentException when the row is malformed, or holds a serialized value and it is not allowed
+     */
+    public static List<Object> read(final ByteBuffer in, final boolean allowSerialized) {
+        return read(in, allowSerialized, null);
+    }
+
+    /**
+     * @param lobOwner object holding the original {@link LobHandle}s of the row, kept by the decoded ones
+     */
+    static List<Object> read(final ByteBuffer in, final Object lobOwner) {
+        return read(in, true, lobOwner);
+    }
+
+    private static List<Object> read(final ByteBuffer in, final boolean allowSerialized, final Object lobOwner) {
+        final int size = in.getInt();
+        if (size < 0 || size > in.remaining()) {
+            throw new IllegalArgumentException("Invalid row size " + size);
+        }
+        final List<Object> row = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            row.add(readValue(in, allowSerialized, lobOwner));
+        }
+        return row;
+    }
+
+    private static void writeValue(final DataOutput out, final Object value, final boolean allowSerialized)
+            throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeInt(((BigDecimal) value).scale());
+            writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Time) {
+            out.writeByte(TIME);
+            out.writeLong(((Time) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof LobHandle) {
+            if (!allowSerialized) {
+                throw new IllegalArgumentException("LOB values can't be encoded");
+            }
+            out.writeByte(LOB);
+            ((LobHandle) value).writeReference(out);
+        } else if (value instanceof Serializable) {
+            if (!allowSerialized) {
+                throw new IllegalArgumentException("Values of type " + value.getClass().getName()
+                        + " can't be encoded");
+            }
+            out.writeByte(SERIALIZED);
+            writeBytes(out, serialize(value));
+        } else {
+            out.writeByte(STRING);
+            writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Object readValue(final ByteBuffer in, final boolean allowSerialized,
+            final Object lobOwner) {
+        final byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INT:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case DOUBLE:
+                return in.getDouble();
+            case FLOAT:
+                return in.getFloat();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case BIG_DECIMAL:
+                final int scale = in.getInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case TIMESTAMP:
+                final Timestamp timestamp = new Timestamp(in.getLong());
+                timestamp.setNanos(in.getInt());
+                return timestamp;
+            case DATE:
+                return new Date(in.getLong());
+            case TIME:
+                return new Time(in.getLong());
+            case BYTES:
+                return readBytes(in);
+            case SERIALIZED:
+                if (!allowSerialized) {
+                    throw new IllegalArgumentException("Serialized values are not accepted");
+                }
+                return deserialize(readBytes(in));
+            case LOB:
+                if (!allowSerialized) {
+                    throw new IllegalArgumentException("LOB values are not accepted");
+                }
+                return LobHandle.readReference(in, lobOwner);
+            default:
+                throw new IllegalArgumentException("Unknown value type " + tag);
+        }
+    }
+
+    private static void writeBytes(final DataOutput out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final ByteBuffer in) {
+        final int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Invalid value length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] serialize(final Object value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (final ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
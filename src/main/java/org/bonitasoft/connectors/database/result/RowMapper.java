@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the rows of a result set with one {@link ColumnExtractor} per column, chosen once from the
+ * {@link ResultSetMetaData}, instead of calling {@link ResultSet#getObject(int)} for each cell.
+ * <p>
+ * Values keep the class given by {@link ResultSetMetaData#getColumnClassName(int)}. Vendor timestamps, such as
+ * <code>oracle.sql.TIMESTAMP</code>, are read as {@link Timestamp}, and BLOB and CLOB columns are streamed into
+ * {@link LobHandle}s rather than read as driver locators.
+ */
+public final class RowMapper {
+
+    private static final ColumnExtractor OBJECT = ResultSet::getObject;
+
+    private static final ColumnExtractor STRING = ResultSet::getString;
+
+    private static final ColumnExtractor INT = (resultSet, columnIndex) -> {
+        final int value = resultSet.getInt(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    };
+
+    private static final ColumnExtractor LONG = (resultSet, columnIndex) -> {
+        final long value = resultSet.getLong(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    };
+
+    private static final ColumnExtractor DOUBLE = (resultSet, columnIndex) -> {
+        final double value = resultSet.getDouble(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    };
+
+    private static final ColumnExtractor FLOAT = (resultSet, columnIndex) -> {
+        final float value = resultSet.getFloat(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    };
+
+    private static final ColumnExtractor BOOLEAN = (resultSet, columnIndex) -> {
+        final boolean value = resultSet.getBoolean(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    };
+
+    private static final ColumnExtractor BIG_DECIMAL = ResultSet::getBigDecimal;
+
+    private static final ColumnExtractor TIMESTAMP = ResultSet::getTimestamp;
+
+    private static final ColumnExtractor DATE = ResultSet::getDate;
+
+    private static final ColumnExtractor TIME = ResultSet::getTime;
+
+    private static final ColumnExtractor BYTES = ResultSet::getBytes;
+
+    private static final ColumnExtractor BINARY_LOB = LobHandle::readBinary;
+
+    private static final ColumnExtractor CHARACTER_LOB = LobHandle::readCharacters;
+
+    private final ColumnExtractor[] extractors;
+
+    private RowMapper(final ColumnExtractor[] extractors) {
+        this.extractors = extractors;
+    }
+
+    public static RowMapper of(final ResultSetMetaData metaData) throws SQLException {
+        final ColumnExtractor[] extractors = new ColumnExtractor[metaData.getColumnCount()];
+        for (int i = 0; i < extractors.length; i++) {
+            extractors[i] = extractor(metaData.getColumnType(i + 1), metaData.getColumnClassName(i + 1));
+        }
+        return new RowMapper(extractors);
+    }
+
+    static ColumnExtractor extractor(final int sqlType, final String className) {
+        if (sqlType == Types.BLOB || Blob.class.getName().equals(className)) {
+            return BINARY_LOB;
+        } else if (sqlType == Types.CLOB || sqlType == Types.NCLOB || Clob.class.getName().equals(className)
+                || NClob.class.getName().equals(className)) {
+            return CHARACTER_LOB;
+        } else if (Integer.class.getName().equals(className)) {
+            return INT;
+        } else if (Long.class.getName().equals(className)) {
+            return LONG;
+        } else if (Double.class.getName().equals(className)) {
+            return DOUBLE;
+        } else if (Float.class.getName().equals(className)) {
+            return FLOAT;
+        } else if (Boolean.class.getName().equals(className)) {
+            return BOOLEAN;
+        } else if (String.class.getName().equals(className)) {
+            return STRING;
+        } else if (BigDecimal.class.getName().equals(className)) {
+            return BIG_DECIMAL;
+        } else if (Timestamp.class.getName().equals(className) || isVendorTimestamp(sqlType, className)) {
+            return TIMESTAMP;
+        } else if (Date.class.getName().equals(className)) {
+            return DATE;
+        } else if (Time.class.getName().equals(className)) {
+            return TIME;
+        } else if ("[B".equals(className)) {
+            return BYTES;
+        }
+        return OBJECT;
+    }
+
+    private static boolean isVendorTimestamp(final int sqlType, final String className) {
+        return sqlType == Types.TIMESTAMP && className != null && !className.startsWith("java.");
+    }
+
+    public int getColumnCount() {
+        return extractors.length;
+    }
+
+    /**
+     * @param columnIndex the index of the column, starting at 1
+     */
+    public Object getValue(final ResultSet resultSet, final int columnIndex) throws SQLException {
+        return extractors[columnIndex - 1].extract(resultSet, columnIndex);
+    }
+
+    /**
+     * @return the values of the current row
+     */
+    public List<Object> mapRow(final ResultSet resultSet) throws SQLException {
+        final List<Object> row = new ArrayList<>(extractors.length);
+        for (int i = 0; i < extractors.length; i++) {
+            row.add(extractors[i].extract(resultSet, i + 1));
+        }
+        return row;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Rough estimate of the heap used by the values of a materialized result, assuming compressed references. It is
+ * meant to be cheap rather than exact: objects it does not know are counted as a small fixed-size object.
+ */
+public final class SizeEstimator {
+
+    /**
+     * Size of the reference to a value held in a list or an array.
+     */
+    public static final int REFERENCE = 4;
+
+    private static final int HEADER = 16;
+
+    private static final int DEFAULT_OBJECT = 32;
+
+    private SizeEstimator() {
+    }
+
+    public static long estimate(final Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40L + ((String) value).length();
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof Float) {
+            return HEADER;
+        } else if (value instanceof Long || value instanceof Double || value instanceof Date) {
+            return HEADER + 8L;
+        } else if (value instanceof BigDecimal) {
+            return 40L + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+        } else if (value instanceof BigInteger) {
+            return 40L + ((BigInteger) value).bitLength() / 8;
+        } else if (value instanceof byte[]) {
+            return HEADER + (long) ((byte[]) value).length;
+        } else if (value instanceof LobHandle) {
+            return ((LobHandle) value).getHeapSize();
+        }
+        return DEFAULT_OBJECT;
+    }
+
+    /**
+     * @return the estimated size of the values of the row and of the list holding them
+     */
+    public static long estimateRow(final List<Object> row) {
+        long size = 40L + (long) REFERENCE * row.size();
+        for (final Object value : row) {
+            size += estimate(value);
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bonitasoft.engine.connector.ConnectorException;
+
+/**
+ * Read-only table whose rows are stored in a temporary file, for results too big to be held in the heap. Rows are
+ * encoded with {@link RowCodec} and written through a {@link FileChannel}. They are decoded on access from
+ * memory-mapped segments of the file, located with a memory-mapped index of row offsets. The heap used by the table
+ * does not depend on the number of rows.
+ * <p>
+ * The files are unmapped and deleted by {@link #close()}, or once the table is garbage collected: a mapped file can't
+ * be deleted on Windows. The temporary directory is the one of the JVM, unless set with the
+ * {@value #DIRECTORY_PROPERTY} system property. Serializing the table, e.g. to store it in a process variable,
+ * materializes it as an {@link ArrayList} of rows.
+ * <p>
+ * LOB values stored in their own files are referenced by the rows: the table keeps their {@link LobHandle}s, and the
+ * handles decoded from its rows keep the table, so the files live as long as the table or any decoded handle.
+ */
+public final class SpilledTable extends AbstractList<List<Object>> implements RandomAccess, Closeable, Serializable {
+
+    public static final String DIRECTORY_PROPERTY = "org.bonitasoft.connectors.database.spillDirectory";
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(SpilledTable.class.getName());
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static final Object UNSAFE;
+
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Result files can't be unmapped before being deleted", e);
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final transient TemporaryFiles files;
+
+    private final transient Cleaner.Cleanable cleanable;
+
+    private final transient int rowCount;
+
+    private final transient long dataSize;
+
+    private final transient long[] segmentStarts;
+
+    private final transient MappedByteBuffer[] segments;
+
+    private final transient LongBuffer index;
+
+    private final transient List<LobHandle> lobs;
+
+    /**
+     * Read by {@link #get(int)}, written by {@link #close()}: a row must not be decoded from an unmapped segment.
+     */
+    private final transient ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private transient boolean closed;
+
+    private SpilledTable(final TemporaryFiles files, final int rowCount, final long dataSize,
+            final long[] segmentStarts, final List<LobHandle> lobs) throws IOException {
+        this.files = files;
+        this.lobs = lobs;
+        cleanable = CLEANER.register(this, files);
+        this.rowCount = rowCount;
+        this.dataSize = dataSize;
+        this.segmentStarts = segmentStarts;
+        segments = new MappedByteBuffer[segmentStarts.length];
+        index = files.map(files.index, 0, 8L * rowCount).asLongBuffer();
+    }
+
+    /**
+     * Writes the remaining rows of the result set that fit in the budget, whose size is the size of the file, without
+     * closing the result set.
+     */
+    public static SpilledTable write(final ResultSet resultSet, final RowMapper rowMapper, final ResultBudget budget)
+            throws SQLException, ConnectorException {
+        return write(resultSet, rowMapper, budget, SEGMENT_SIZE);
+    }
+
+    static SpilledTable write(final ResultSet resultSet, final RowMapper rowMapper, final ResultBudget budget,
+            final long segmentSize) throws SQLException, ConnectorException {
+        final TemporaryFiles files = TemporaryFiles.create();
+        try (FileChannel dataChannel = FileChannel.open(files.data, StandardOpenOption.WRITE);
+                FileChannel indexChannel = FileChannel.open(files.index, StandardOpenOption.WRITE)) {
+            final ByteBuffer dataBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            final ByteBuffer indexBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            final ByteBuffer indexEntry = ByteBuffer.allocate(8);
+            final RowBuffer row = new RowBuffer();
+            final List<Long> segmentStarts = new ArrayList<>();
+            final List<LobHandle> lobs = new ArrayList<>();
+            segmentStarts.add(0L);
+            long segmentStart = 0;
+            long offset = 0;
+            int rowCount = 0;
+            while (resultSet.next() && budget.acceptRow()) {
+                row.reset();
+                final List<Object> values = rowMapper.mapRow(resultSet);
+                RowCodec.write(row.out, values);
+                if (!budget.add(row.size() + 8L)) {
+                    break;
+                }
+                for (final Object value : values) {
+                    if (value instanceof LobHandle && !((LobHandle) value).isInline()) {
+                        lobs.add((LobHandle) value);
+                    }
+                }
+                if (offset > segmentStart && offset - segmentStart + row.size() > segmentSize) {
+                    segmentStart = offset;
+                    segmentStarts.add(segmentStart);
+                }
+                indexEntry.clear();
+                put(indexChannel, indexBuffer, indexEntry.putLong(0, offset));
+                put(dataChannel, dataBuffer, row.toByteBuffer());
+                offset += row.size();
+                rowCount++;
+            }
+            flush(dataChannel, dataBuffer);
+            flush(indexChannel, indexBuffer);
+            final long[] starts = new long[segmentStarts.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = segmentStarts.get(i);
+            }
+            return new SpilledTable(files, rowCount, offset, starts, lobs);
+        } catch (final IOException e) {
+            files.run();
+            throw new SQLException("Unable to write result to " + files.data, e);
+        } catch (final SQLException | ConnectorException | RuntimeException e) {
+            files.run();
+            throw e;
+        }
+    }
+
+    private static void put(final FileChannel channel, final ByteBuffer buffer, final ByteBuffer source)
+            throws IOException {
+        if (source.remaining() > buffer.remaining()) {
+            flush(channel, buffer);
+        }
+        if (source.remaining() > buffer.remaining()) {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } else {
+            buffer.put(source);
+        }
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public List<Object> get(final int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + rowCount);
+        }
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Result table is closed");
+            }
+            final long offset = index.get(row);
+            int segment = Arrays.binarySearch(segmentStarts, offset);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            final ByteBuffer buffer = segment(segment).duplicate();
+            buffer.position((int) (offset - segmentStarts[segment]));
+            return RowCodec.read(buffer, this);
+        } finally {
+            lock.readLock().unlock();
+            // the Cleaner must not unmap the segments while a row is decoded
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    private synchronized MappedByteBuffer segment(final int segment) {
+        if (segments[segment] == null) {
+            final long start = segmentStarts[segment];
+            final long end = segment + 1 < segmentStarts.length ? segmentStarts[segment + 1] : dataSize;
+            try {
+                segments[segment] = files.map(files.data, start, end - start);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return segments[segment];
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    int getSegmentCount() {
+        return segmentStarts.length;
+    }
+
+    /**
+     * @return the size in bytes of the encoded rows
+     */
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Unmaps and deletes the files of the table, which can't be read afterwards.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            cleanable.clean();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (final LobHandle lob : lobs) {
+            lob.delete();
+        }
+    }
+
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+
+    /**
+     * Files of a table and their mappings, unmapped then deleted by the {@link Cleaner}: it must not reference the
+     * table.
+     */
+    private static final class TemporaryFiles implements Runnable {
+
+        private final Path data;
+
+        private final Path index;
+
+        private final List<MappedByteBuffer> mappings = new ArrayList<>();
+
+        private TemporaryFiles(final Path data, final Path index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        static TemporaryFiles create() throws SQLException {
+            final String directory = System.getProperty(DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir"));
+            try {
+                final Path data = Files.createTempFile(Paths.get(directory), "bonita-db-result-", ".data");
+                final Path index = Files.createTempFile(Paths.get(directory), "bonita-db-result-", ".index");
+                return new TemporaryFiles(data, index);
+            } catch (final IOException e) {
+                throw new SQLException("Unable to create result files in " + directory, e);
+            }
+        }
+
+        synchronized MappedByteBuffer map(final Path path, final long position, final long size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                mappings.add(mapping);
+                return mapping;
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            for (final MappedByteBuffer mapping : mappings) {
+                unmap(mapping);
+            }
+            mappings.clear();
+            delete(data);
+            delete(index);
+        }
+
+        private static void unmap(final MappedByteBuffer mapping) {
+            if (INVOKE_CLEANER != null) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, mapping);
+                } catch (final ReflectiveOperationException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Unable to unmap result file", e);
+                }
+            }
+        }
+
+        private static void delete(final Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to delete result file " + path, e);
+            }
+        }
+
+    }
+
+    /**
+     * Reusable buffer the rows are encoded in before being written.
+     */
+    private static final class RowBuffer extends ByteArrayOutputStream {
+
+        private final DataOutputStream out = new DataOutputStream(this);
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CancellationRegistryTest {
+
+    @Test
+    void should_cancel_running_statements_and_refuse_new_ones() throws Exception {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        try (CancellationRegistry.Execution execution = CancellationRegistry.register("SELECT 1")) {
+            execution.track(statement(cancelled), 0);
+
+            assertThat(CancellationRegistry.getExecutions()).contains(execution);
+            assertThat(CancellationRegistry.cancel(execution.getId())).isTrue();
+            assertThat(cancelled.getCount()).isZero();
+            assertThrows(SQLException.class, () -> execution.track(statement(new CountDownLatch(1)), 0));
+        }
+        assertThat(CancellationRegistry.cancel("unknown")).isFalse();
+    }
+
+    @Test
+    void should_cancel_statement_exceeding_its_timeout() throws Exception {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        try (CancellationRegistry.Execution execution = CancellationRegistry.register("SELECT 1")) {
+            final Statement slow = statement(cancelled);
+            final Statement fast = statement(released);
+            execution.track(slow, 1);
+            execution.track(fast, 1);
+            execution.release(fast);
+
+            assertThat(cancelled.await(CancellationRegistry.WATCHDOG_GRACE + 5000, TimeUnit.MILLISECONDS)).isTrue();
+            assertThat(released.await(100, TimeUnit.MILLISECONDS)).isFalse();
+            assertThat(execution.getRunningStatements()).isEqualTo(1);
+        }
+        assertThat(CancellationRegistry.getExecutions()).noneMatch(execution -> "SELECT 1".equals(
+                execution.getDescription()));
+    }
+
+    /**
+     * @return a statement counting down the latch when cancelled
+     */
+    private static Statement statement(final CountDownLatch cancelled) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { Statement.class },
+                (proxy, method, args) -> {
+                    if ("cancel".equals(method.getName())) {
+                        cancelled.countDown();
+                    } else if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    } else if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    return null;
+                });
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class CommandGroupsTest {
+
+    @Test
+    void should_start_group_at_marker() {
+        assertThat(CommandGroups.split(ScriptSplitter.split("INSERT 1; -- first\n--@group orders\nINSERT 2;"
+                + " INSERT 3; --  @group\nINSERT 4", ";").getCommands()))
+                        .containsExactly(Arrays.asList("INSERT 1"),
+                                Arrays.asList("-- first\n--@group orders\nINSERT 2", "INSERT 3"),
+                                Arrays.asList("--  @group\nINSERT 4"));
+    }
+
+    @Test
+    void should_ignore_marker_after_code() {
+        assertThat(CommandGroups.split(Arrays.asList("--@group\nINSERT 1", "INSERT 2 --@group",
+                "/* --@group */ INSERT 3", "--@groups\nINSERT 4"))).hasSize(1);
+    }
+
+}
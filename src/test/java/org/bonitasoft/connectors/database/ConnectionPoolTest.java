@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+
+    private static final String URL = "jdbc:hsqldb:mem:pooltest";
+
+    @AfterEach
+    void tearDown() {
+        ConnectionPool.setConfiguration(PoolConfiguration.fromSystemProperties());
+    }
+
+    @Test
+    void should_reuse_released_connection() throws Exception {
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+
+        final PooledConnection first = pool.borrow();
+        final Connection physical = first.getConnection();
+        pool.release(first);
+        final PooledConnection second = pool.borrow();
+
+        assertThat(second.getConnection()).isSameAs(physical);
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+        assertThat(pool.getBorrowedCount()).isEqualTo(2);
+        pool.release(second);
+    }
+
+    @Test
+    void should_share_pool_for_same_settings_only() throws Exception {
+        assertThat(ConnectionPool.getPool(DRIVER, URL, "sa", ""))
+                .isSameAs(ConnectionPool.getPool(DRIVER, URL, "sa", ""))
+                .isNotSameAs(ConnectionPool.getPool(DRIVER, URL, "sa", "other"));
+    }
+
+    @Test
+    void should_rollback_and_restore_auto_commit_on_release() throws Exception {
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        final PooledConnection borrowed = pool.borrow();
+        borrowed.getConnection().setAutoCommit(false);
+        pool.release(borrowed);
+
+        final PooledConnection reused = pool.borrow();
+        assertThat(reused.getConnection().getAutoCommit()).isTrue();
+        pool.release(reused);
+    }
+
+    @Test
+    void should_discard_closed_connection_on_borrow() throws Exception {
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        final PooledConnection borrowed = pool.borrow();
+        pool.release(borrowed);
+        borrowed.getConnection().close();
+
+        final PooledConnection reused = pool.borrow();
+        assertThat(reused.getConnection()).isNotSameAs(borrowed.getConnection());
+        assertThat(reused.getConnection().isClosed()).isFalse();
+        pool.release(reused);
+    }
+
+    @Test
+    void should_fail_when_pool_is_exhausted() throws Exception {
+        ConnectionPool.setConfiguration(configuration(PoolConfiguration.MAX_SIZE, "1"));
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        final PooledConnection borrowed = pool.borrow();
+
+        assertThrows(SQLException.class, pool::borrow);
+        pool.release(borrowed);
+    }
+
+    @Test
+    void should_close_connections_exceeding_max_lifetime() throws Exception {
+        ConnectionPool.setConfiguration(configuration(PoolConfiguration.MAX_LIFETIME, "1"));
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        final PooledConnection borrowed = pool.borrow();
+        Thread.sleep(5);
+        pool.release(borrowed);
+
+        assertThat(borrowed.getConnection().isClosed()).isTrue();
+        assertThat(pool.getSize()).isZero();
+    }
+
+    @Test
+    void should_evict_idle_connections_above_min_idle() throws Exception {
+        ConnectionPool.setConfiguration(configuration(PoolConfiguration.IDLE_TIMEOUT, "0"));
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        final PooledConnection first = pool.borrow();
+        final PooledConnection second = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+
+        pool.evict();
+
+        assertThat(pool.getIdleCount()).isZero();
+        assertThat(pool.getDestroyedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void should_reuse_cached_prepared_statement_on_same_connection() throws Exception {
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        final PooledConnection borrowed = pool.borrow();
+        final PreparedStatement statement = borrowed.prepareCachedStatement("VALUES (?)",
+                ResultSet.TYPE_FORWARD_ONLY);
+        pool.release(borrowed);
+
+        final PooledConnection reused = pool.borrow();
+        assertThat(reused.prepareCachedStatement("VALUES (?)", ResultSet.TYPE_FORWARD_ONLY)).isSameAs(statement);
+        pool.release(reused);
+    }
+
+    @Test
+    void should_close_least_recently_used_statement() throws Exception {
+        ConnectionPool.setConfiguration(configuration(PoolConfiguration.STATEMENT_CACHE_SIZE, "1"));
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        final PooledConnection borrowed = pool.borrow();
+        final PreparedStatement first = borrowed.prepareCachedStatement("VALUES (1)", ResultSet.TYPE_FORWARD_ONLY);
+        borrowed.prepareCachedStatement("VALUES (2)", ResultSet.TYPE_FORWARD_ONLY);
+
+        assertThat(first.isClosed()).isTrue();
+        pool.release(borrowed);
+    }
+
+    @Test
+    void should_not_top_up_min_idle_beyond_max_size() throws Exception {
+        ConnectionPool.setConfiguration(
+                configuration(PoolConfiguration.MAX_SIZE, "1", PoolConfiguration.MIN_IDLE, "1"));
+        final ConnectionPool pool = ConnectionPool.getPool(BlockingDriver.class.getName(), BlockingDriver.URL, "sa",
+                "");
+        BlockingDriver.connecting = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        BlockingDriver.proceed = proceed;
+        final CompletableFuture<PooledConnection> borrower = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.borrow();
+            } catch (final SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(BlockingDriver.connecting.await(5, TimeUnit.SECONDS)).isTrue();
+
+        pool.evict();
+        proceed.countDown();
+        final PooledConnection borrowed = borrower.get(5, TimeUnit.SECONDS);
+
+        assertThat(pool.getSize()).isEqualTo(1);
+        assertThat(pool.getIdleCount()).isZero();
+        pool.release(borrowed);
+    }
+
+    @Test
+    void should_close_pools_and_stop_housekeeper_on_shutdown() throws Exception {
+        final ConnectionPool pool = ConnectionPool.getPool(DRIVER, URL, "sa", "");
+        pool.release(pool.borrow());
+        final Thread housekeeper = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("bonita-connector-database-pool-housekeeper"))
+                .findFirst().orElseThrow();
+
+        ConnectionPool.shutdown();
+        housekeeper.join(5000);
+
+        assertThat(housekeeper.isAlive()).isFalse();
+        assertThat(pool.getIdleCount()).isZero();
+        assertThat(pool.getDestroyedCount()).isEqualTo(1);
+        assertThat(ConnectionPool.getPool(DRIVER, URL, "sa", "")).isNotSameAs(pool);
+    }
+
+    private static PoolConfiguration configuration(final String... settings) {
+        final Properties properties = new Properties();
+        properties.setProperty(PoolConfiguration.PREFIX + PoolConfiguration.BORROW_TIMEOUT, "100");
+        for (int i = 0; i < settings.length; i += 2) {
+            properties.setProperty(PoolConfiguration.PREFIX + settings[i], settings[i + 1]);
+        }
+        return PoolConfiguration.fromProperties(properties);
+    }
+
+    /**
+     * Opens HSQLDB connections, the first one only once the test lets it proceed.
+     */
+    public static class BlockingDriver implements Driver {
+
+        static final String URL = "jdbc:blocking:pooltest";
+
+        static volatile CountDownLatch connecting = new CountDownLatch(0);
+
+        static volatile CountDownLatch proceed = new CountDownLatch(0);
+
+        static {
+            try {
+                DriverManager.registerDriver(new BlockingDriver());
+            } catch (final SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Connection connect(final String url, final Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            final CountDownLatch latch = proceed;
+            proceed = new CountDownLatch(0);
+            connecting.countDown();
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return DriverManager.getConnection(ConnectionPoolTest.URL, info);
+        }
+
+        @Override
+        public boolean acceptsURL(final String url) {
+            return URL.equals(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(final String url, final Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+
+    }
+
+}
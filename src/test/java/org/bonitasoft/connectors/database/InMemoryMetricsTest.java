@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.bonitasoft.connectors.database.ConnectorMetrics.Counter;
+import org.bonitasoft.connectors.database.ConnectorMetrics.Phase;
+import org.junit.jupiter.api.Test;
+
+class InMemoryMetricsTest {
+
+    @Test
+    void should_aggregate_values_per_series() {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.recordTime(Phase.EXECUTE, "database-h2", "q1", 10);
+        metrics.recordTime(Phase.EXECUTE, "database-h2", "q1", 30);
+        metrics.recordCount(Counter.ROWS_FETCHED, "database-h2", "q1", 5);
+
+        final InMemoryMetrics.Statistic execute = metrics.getStatistics()
+                .get("execute{definition=database-h2,query=q1}");
+        assertThat(execute.getCount()).isEqualTo(2);
+        assertThat(execute.getTotal()).isEqualTo(40);
+        assertThat(execute.getMax()).isEqualTo(30);
+        assertThat(metrics.getStatistics()).containsKey("rows_fetched{definition=database-h2,query=q1}");
+    }
+
+    @Test
+    void should_group_fingerprints_beyond_max_fingerprints() {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        for (int i = 0; i < InMemoryMetrics.MAX_FINGERPRINTS + 10; i++) {
+            metrics.recordCount(Counter.BATCH_SIZE, "database-h2", "q" + i, 1);
+            metrics.recordTime(Phase.EXECUTE, "database-h2", "q" + i, 1);
+        }
+
+        assertThat(metrics.getStatistics()).hasSize(2 * (InMemoryMetrics.MAX_FINGERPRINTS + 1));
+        assertThat(metrics.getStatistics().get("batch_size{definition=database-h2,query=other}").getCount())
+                .isEqualTo(10);
+        assertThat(metrics.getStatistics()).containsKey(
+                "execute{definition=database-h2,query=q" + (InMemoryMetrics.MAX_FINGERPRINTS - 1) + "}");
+    }
+
+    @Test
+    void should_export_series_in_jmx() throws Exception {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.recordTime(Phase.CONNECT, "database-h2", "q1", 7);
+        MetricsExporter.register(metrics);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = MetricsExporter.objectName();
+        try {
+            assertThat(server.queryNames(new ObjectName(MetricsExporter.OBJECT_NAME + ",*"), null)).contains(name);
+            assertThat(server.getAttribute(name, "connect{definition=database-h2,query=q1}.max")).isEqualTo(7L);
+
+            server.invoke(name, "reset", null, null);
+
+            assertThat(metrics.getStatistics()).isEmpty();
+        } finally {
+            if (ExecutionMetrics.getMetrics() instanceof InMemoryMetrics) {
+                MetricsExporter.register((InMemoryMetrics) ExecutionMetrics.getMetrics());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.bonitasoft.engine.connector.ConnectorException;
+import org.junit.jupiter.api.Test;
+
+class KeysetPaginationTest {
+
+    private static final String QUERY = "SELECT a, b FROM t WHERE c = ?";
+
+    @Test
+    void should_limit_page_query_with_dialect_syntax() throws Exception {
+        assertThat(page(Dialect.fromUrl("jdbc:postgresql://host/db")).getSql())
+                .isEqualTo("SELECT * FROM (" + QUERY + "\n) keyset_page ORDER BY a, b LIMIT 11");
+        assertThat(page(Dialect.fromUrl("jdbc:sqlserver://host")).getSql()).startsWith("SELECT TOP 11 * FROM (");
+        assertThat(page(Dialect.fromUrl("jdbc:informix-sqli://host")).getSql()).startsWith("SELECT FIRST 11 * ");
+        assertThat(page(Dialect.fromUrl("jdbc:oracle:thin:@host:1521:db")).getSql())
+                .startsWith("SELECT * FROM (SELECT * FROM (").endsWith(") WHERE ROWNUM <= 11");
+        assertThat(page(Dialect.fromUrl("jdbc:db2://host/db")).getSql()).endsWith(" FETCH FIRST 11 ROWS ONLY");
+    }
+
+    @Test
+    void should_continue_after_last_key() throws Exception {
+        final KeysetPagination pagination = new KeysetPagination(Arrays.asList("a", "b"), 10, Dialect.LIMIT);
+        final String token = pagination.nextToken(QUERY, Arrays.asList(5, "x"));
+
+        final ParameterizedSql next = pagination.pageQuery(QUERY, Collections.singletonList("c"), token);
+
+        assertThat(next.getSql()).contains("WHERE (a > ?) OR (a = ? AND b > ?) ORDER BY a, b");
+        assertThat(next.getValues()).containsExactly("c", 5, 5, "x");
+    }
+
+    @Test
+    void should_reject_invalid_tokens() throws Exception {
+        final KeysetPagination pagination = new KeysetPagination(Collections.singletonList("a"), 10, Dialect.LIMIT);
+        final String token = pagination.nextToken(QUERY, Collections.singletonList(5));
+
+        assertThrows(ConnectorException.class, () -> pagination.pageQuery("SELECT a FROM t", Collections.emptyList(),
+                token));
+        assertThrows(ConnectorException.class, () -> pagination.pageQuery(QUERY, Collections.emptyList(), "%%"));
+        final byte[] truncated = Arrays.copyOf(Base64.getUrlDecoder().decode(token), 8);
+        assertThrows(ConnectorException.class, () -> pagination.pageQuery(QUERY, Collections.emptyList(),
+                Base64.getUrlEncoder().encodeToString(truncated)));
+        assertThrows(ConnectorException.class,
+                () -> pagination.nextToken(QUERY, Collections.singletonList(UUID.randomUUID())));
+    }
+
+    private static ParameterizedSql page(final Dialect dialect) throws ConnectorException {
+        return new KeysetPagination(Arrays.asList("a", "b"), 10, dialect).pageQuery(QUERY + ";",
+                Collections.emptyList(), null);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ParameterizedSqlTest {
+
+    @Test
+    void should_keep_positional_parameters() {
+        final ParameterizedSql sql = ParameterizedSql.of("SELECT * FROM t WHERE a = ? AND b = ?",
+                Arrays.asList(1, "x"));
+
+        assertThat(sql.getSql()).isEqualTo("SELECT * FROM t WHERE a = ? AND b = ?");
+        assertThat(sql.getValues()).containsExactly(1, "x");
+    }
+
+    @Test
+    void should_replace_named_parameters_in_order() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("id", 3);
+        values.put("name", "John");
+
+        final ParameterizedSql sql = ParameterizedSql.of(
+                "UPDATE t SET name = :name WHERE id = :id OR parent = :id", values);
+
+        assertThat(sql.getSql()).isEqualTo("UPDATE t SET name = ? WHERE id = ? OR parent = ?");
+        assertThat(sql.getValues()).containsExactly("John", 3, 3);
+    }
+
+    @Test
+    void should_ignore_colons_in_literals_comments_and_casts() {
+        final ParameterizedSql sql = ParameterizedSql.of(
+                "SELECT ':a', \":b\", c::text -- :d\n/* :e */ FROM t WHERE f = :f",
+                Map.of("f", 1));
+
+        assertThat(sql.getSql()).isEqualTo("SELECT ':a', \":b\", c::text -- :d\n/* :e */ FROM t WHERE f = ?");
+        assertThat(sql.getValues()).containsExactly(1);
+    }
+
+    @Test
+    void should_fail_when_named_parameter_has_no_value() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ParameterizedSql.of("SELECT * FROM t WHERE a = :a", new HashMap<>()));
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.junit.jupiter.api.Test;
+
+class PartitionedQueryTest {
+
+    @Test
+    void should_split_integral_range_into_distinct_bounds() throws Exception {
+        assertThat(PartitionedQuery.split(1, 10, 3)).containsExactly(1, 4L, 7L, 10);
+        assertThat(PartitionedQuery.split(1L, 2L, 4)).containsExactly(1L, 2L);
+        assertThat(PartitionedQuery.split(5, 5, 4)).containsExactly(5, 5);
+        assertThat(PartitionedQuery.split(null, null, 4)).isEmpty();
+    }
+
+    @Test
+    void should_split_decimal_and_date_ranges() throws Exception {
+        assertThat(PartitionedQuery.split(new BigDecimal("0"), new BigDecimal("1"), 2)).hasSize(3)
+                .element(1).isEqualTo(new BigDecimal("0.5000000000"));
+        assertThat(PartitionedQuery.split(new Timestamp(0), new Timestamp(1000), 2))
+                .containsExactly(new Timestamp(0), new Timestamp(500), new Timestamp(1000));
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class QueryFingerprintTest {
+
+    @Test
+    void should_replace_literals_and_collapse_whitespace() {
+        assertThat(QueryFingerprint.normalize("select *\n  from t1 -- comment\nwhere a = 'it''s' and b > 42.5 "
+                + "/* hint */ and \"Col1\" = 7")).isEqualTo(
+                        "SELECT * FROM T1 WHERE A = ? AND B > ? AND \"Col1\" = ?");
+    }
+
+    @Test
+    void should_stop_normalizing_at_max_length() {
+        assertThat(QueryFingerprint.normalize("select a,  b from t where c = 'x'", 10)).isEqualTo("SELECT A, B");
+    }
+
+    @Test
+    void should_give_same_fingerprint_to_queries_differing_by_values() {
+        assertThat(QueryFingerprint.of("SELECT * FROM t WHERE id = 1"))
+                .isEqualTo(QueryFingerprint.of("select * from t where id = 2"))
+                .isNotEqualTo(QueryFingerprint.of("SELECT * FROM t WHERE name = 'a'"))
+                .hasSize(8);
+    }
+
+}
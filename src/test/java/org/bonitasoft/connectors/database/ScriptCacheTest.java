@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ScriptCacheTest {
+
+    @AfterEach
+    void tearDown() {
+        ScriptCache.setMaxWeight(ScriptCache.DEFAULT_MAX_WEIGHT);
+        ScriptCache.clear();
+    }
+
+    @Test
+    void should_share_parsed_script_for_same_script_and_separator() {
+        ScriptCache.clear();
+        final long hits = ScriptCache.getHitCount();
+
+        final ParsedScript parsed = ScriptCache.parse("INSERT INTO t VALUES (1); DELETE FROM t", ";");
+
+        assertThat(ScriptCache.parse(new String("INSERT INTO t VALUES (1); DELETE FROM t"), ";")).isSameAs(parsed);
+        assertThat(ScriptCache.parse("INSERT INTO t VALUES (1); DELETE FROM t", null)).isNotSameAs(parsed);
+        assertThat(ScriptCache.getHitCount() - hits).isEqualTo(1);
+        assertThat(parsed.getKind()).isEqualTo(ParsedScript.Kind.BATCH);
+        assertThat(parsed.getCommands()).containsExactly("INSERT INTO t VALUES (1)", "DELETE FROM t");
+    }
+
+    @Test
+    void should_classify_single_statements() {
+        assertThat(ScriptCache.parse("\n  select * from t", null).isQuery()).isTrue();
+        assertThat(ScriptCache.parse("UPDATE t SET a = 1", null).getKind()).isEqualTo(ParsedScript.Kind.COMMAND);
+    }
+
+    @Test
+    void should_evict_least_recently_used_scripts_above_max_weight() {
+        ScriptCache.clear();
+        ScriptCache.setMaxWeight(1000);
+
+        final ParsedScript first = ScriptCache.parse("SELECT 'first'", null);
+        ScriptCache.parse("SELECT 'second'", null);
+        ScriptCache.parse("SELECT 'first'", null);
+        for (int i = 0; i < 10; i++) {
+            ScriptCache.parse("SELECT 'other script number " + i + "'", null);
+        }
+
+        assertThat(ScriptCache.getWeight()).isLessThanOrEqualTo(1000);
+        assertThat(ScriptCache.size()).isLessThan(12);
+        assertThat(ScriptCache.parse("SELECT 'first'", null)).isNotSameAs(first);
+    }
+
+    @Test
+    void should_not_cache_scripts_bigger_than_a_quarter_of_the_cache() {
+        ScriptCache.clear();
+        ScriptCache.setMaxWeight(400);
+
+        ScriptCache.parse("SELECT '" + "x".repeat(200) + "'", null);
+
+        assertThat(ScriptCache.size()).isZero();
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class ScriptSplitterTest {
+
+    @Test
+    void should_split_on_whole_separator_and_skip_blank_commands() {
+        final SqlScript script = ScriptSplitter.split(" SELECT 1 ;; \n SELECT 'a|b' ;\n -- done\n", ";");
+
+        assertThat(script.getCommands()).containsExactly("SELECT 1", "SELECT 'a|b'");
+        assertThat(script.getStart(0)).isEqualTo(1);
+        assertThat(script.getEnd(0)).isEqualTo(9);
+    }
+
+    @Test
+    void should_ignore_separator_in_literals_and_comments() {
+        final SqlScript script = ScriptSplitter.split(
+                "INSERT INTO t VALUES ('a;''b', \"c;d\", `e;f`); -- g;h\nSELECT /* i;j */ 1", ";");
+
+        assertThat(script.getCommands()).containsExactly(
+                "INSERT INTO t VALUES ('a;''b', \"c;d\", `e;f`)",
+                "-- g;h\nSELECT /* i;j */ 1");
+    }
+
+    @Test
+    void should_ignore_separator_in_dollar_quoted_body() {
+        final SqlScript script = ScriptSplitter.split(
+                "CREATE FUNCTION f() RETURNS int AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql;"
+                        + "SELECT $1",
+                ";");
+
+        assertThat(script.getCommands()).containsExactly(
+                "CREATE FUNCTION f() RETURNS int AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql",
+                "SELECT $1");
+    }
+
+    @Test
+    void should_keep_procedural_blocks_together() {
+        final SqlScript script = ScriptSplitter.split("CREATE PROCEDURE p() BEGIN\n"
+                + "  IF a THEN SET b = CASE WHEN c THEN 1 ELSE 2 END; END IF;\n"
+                + "END;\n"
+                + "DECLARE x NUMBER; BEGIN x := 1; END;\n"
+                + "CREATE OR REPLACE PROCEDURE q IS y NUMBER; BEGIN y := 2; END q;\n"
+                + "BEGIN TRANSACTION; COMMIT;", ";");
+
+        assertThat(script.getCommands()).containsExactly(
+                "CREATE PROCEDURE p() BEGIN\n  IF a THEN SET b = CASE WHEN c THEN 1 ELSE 2 END; END IF;\nEND",
+                "DECLARE x NUMBER; BEGIN x := 1; END",
+                "CREATE OR REPLACE PROCEDURE q IS y NUMBER; BEGIN y := 2; END q",
+                "BEGIN TRANSACTION",
+                "COMMIT");
+    }
+
+    @Test
+    void should_close_case_statement_on_end_case() {
+        final SqlScript script = ScriptSplitter.split("CREATE PROCEDURE p(x INT) BEGIN\n"
+                + "  CASE x WHEN 1 THEN SELECT 1; ELSE SELECT 2; END CASE;\n"
+                + "END;\n"
+                + "SELECT 3;\n"
+                + "SELECT 4;", ";");
+
+        assertThat(script.getCommands()).containsExactly(
+                "CREATE PROCEDURE p(x INT) BEGIN\n  CASE x WHEN 1 THEN SELECT 1; ELSE SELECT 2; END CASE;\nEND",
+                "SELECT 3",
+                "SELECT 4");
+    }
+
+    @Test
+    void should_keep_leading_anonymous_block_together() {
+        final SqlScript script = ScriptSplitter.split("BEGIN INSERT INTO t VALUES(1); INSERT INTO t VALUES(2); END;"
+                + " SELECT 1; BEGIN; COMMIT", ";");
+
+        assertThat(script.getCommands()).containsExactly(
+                "BEGIN INSERT INTO t VALUES(1); INSERT INTO t VALUES(2); END", "SELECT 1", "BEGIN", "COMMIT");
+    }
+
+    @Test
+    void should_keep_package_body_with_nested_routines_together() {
+        final SqlScript script = ScriptSplitter.split("CREATE OR REPLACE PACKAGE BODY pkg AS"
+                + " PROCEDURE p IS BEGIN NULL; END;"
+                + " FUNCTION f RETURN NUMBER IS x NUMBER; BEGIN RETURN x; END;"
+                + " END pkg; SELECT 1 FROM dual", ";");
+
+        assertThat(script.getCommands()).containsExactly("CREATE OR REPLACE PACKAGE BODY pkg AS"
+                + " PROCEDURE p IS BEGIN NULL; END;"
+                + " FUNCTION f RETURN NUMBER IS x NUMBER; BEGIN RETURN x; END;"
+                + " END pkg", "SELECT 1 FROM dual");
+    }
+
+    @Test
+    void should_not_open_block_on_begin_identifier() {
+        final SqlScript script = ScriptSplitter.split("SELECT begin FROM t; SELECT 2", ";");
+
+        assertThat(script.getCommands()).containsExactly("SELECT begin FROM t", "SELECT 2");
+    }
+
+    @Test
+    void should_end_declaration_without_begin_at_separator() {
+        final SqlScript script = ScriptSplitter.split("DECLARE @x INT; SELECT 1; DECLARE c CURSOR FOR SELECT 2;"
+                + " IF @x = 1 BEGIN SELECT 3; SELECT 4; END; SELECT 5;", ";");
+
+        assertThat(script.getCommands()).containsExactly("DECLARE @x INT", "SELECT 1",
+                "DECLARE c CURSOR FOR SELECT 2", "IF @x = 1 BEGIN SELECT 3; SELECT 4; END", "SELECT 5");
+    }
+
+    @Test
+    void should_keep_declaration_section_followed_by_begin_together() {
+        final SqlScript script = ScriptSplitter.split("DECLARE x NUMBER; PROCEDURE p IS BEGIN NULL; END;"
+                + " BEGIN p; END;\n"
+                + "CREATE TRIGGER trg BEFORE INSERT ON t FOR EACH ROW DECLARE v NUMBER; BEGIN v := 1; END;\n"
+                + "CREATE PROCEDURE q() BEGIN lbl: LOOP LEAVE lbl; END LOOP; END;\n"
+                + "SELECT 1", ";");
+
+        assertThat(script.getCommands()).containsExactly(
+                "DECLARE x NUMBER; PROCEDURE p IS BEGIN NULL; END; BEGIN p; END",
+                "CREATE TRIGGER trg BEFORE INSERT ON t FOR EACH ROW DECLARE v NUMBER; BEGIN v := 1; END",
+                "CREATE PROCEDURE q() BEGIN lbl: LOOP LEAVE lbl; END LOOP; END",
+                "SELECT 1");
+    }
+
+    @Test
+    void should_keep_whole_script_as_one_command_with_empty_separator() {
+        final SqlScript script = ScriptSplitter.split("  SELECT 1; SELECT 2\n", "");
+
+        assertThat(script.getCommands()).containsExactly("SELECT 1; SELECT 2");
+    }
+
+    @Test
+    void should_match_word_separator_as_whole_word_only() {
+        final SqlScript script = ScriptSplitter.split("SELECT category FROM t\ngo\nBEGIN SELECT 1; END\nGO", "GO");
+
+        assertThat(script.getCommands()).containsExactly("SELECT category FROM t", "BEGIN SELECT 1; END");
+    }
+
+}
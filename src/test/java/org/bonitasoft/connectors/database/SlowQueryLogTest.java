@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SlowQueryLogTest {
+
+    private static final String URL = "jdbc:hsqldb:mem:slowquerytest";
+
+    private static final long MILLISECOND = 1_000_000;
+
+    private final Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch planLogged = new CountDownLatch(1);
+
+    private final Handler handler = new Handler() {
+
+        @Override
+        public void publish(final LogRecord record) {
+            messages.add(record.getMessage());
+            if (record.getMessage().startsWith("Plan of slow query")) {
+                planLogged.countDown();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        logger.addHandler(handler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.removeHandler(handler);
+    }
+
+    @Test
+    void should_log_normalized_slow_queries_within_rate_limit() {
+        final SlowQueryLog slowQueryLog = new SlowQueryLog(10, 2, false);
+        final ParameterizedSql query = ParameterizedSql.of("SELECT * FROM person WHERE name = 'Jane'",
+                Arrays.asList());
+
+        assertThat(slowQueryLog.record("database-h2", "f1", query, 5 * MILLISECOND, 4 * MILLISECOND, 3, URL, null))
+                .isFalse();
+        assertThat(slowQueryLog.record("database-h2", "f1", query, 5 * MILLISECOND, 5 * MILLISECOND, 3, URL, null))
+                .isTrue();
+        assertThat(slowQueryLog.record("database-h2", "f1", query, 20 * MILLISECOND, 0, 3, URL, null)).isTrue();
+        assertThat(slowQueryLog.record("database-h2", "f1", query, 20 * MILLISECOND, 0, 3, URL, null)).isFalse();
+
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0)).contains("database-h2", "10 ms, execute 5 ms, fetch 5 ms, 3 rows",
+                "SELECT * FROM PERSON WHERE NAME = ?").doesNotContain("Jane");
+    }
+
+    @Test
+    void should_not_log_when_disabled() {
+        final SlowQueryLog slowQueryLog = new SlowQueryLog(0, 10, false);
+
+        assertThat(slowQueryLog.isSlow(Long.MAX_VALUE / 2, 0)).isFalse();
+    }
+
+    @Test
+    void should_capture_plan_on_separate_connection() throws Exception {
+        final SlowQueryLog slowQueryLog = new SlowQueryLog(1, 10, true);
+        final ParameterizedSql query = ParameterizedSql.of(
+                "SELECT * FROM INFORMATION_SCHEMA.SYSTEM_TABLES WHERE TABLE_NAME = ?", Arrays.asList("X"));
+
+        slowQueryLog.record("database-hsqldb", "f2", query, 2 * MILLISECOND, 0, 0, URL,
+                () -> new Database("org.hsqldb.jdbcDriver", URL, "sa", ""));
+
+        assertThat(planLogged.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(messages.get(messages.size() - 1)).contains("SYSTEM_TABLES");
+    }
+
+}
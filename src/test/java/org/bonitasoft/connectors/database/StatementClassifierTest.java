@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+class StatementClassifierTest {
+
+    @Test
+    void should_recognise_queries_after_comments_and_parentheses() {
+        assertThat(StatementClassifier.isQuery("select 1")).isTrue();
+        assertThat(StatementClassifier.isQuery("-- comment\n/* select */ ( SELECT 1 ) UNION (SELECT 2)")).isTrue();
+        assertThat(StatementClassifier.isQuery("VALUES (1), (2)")).isTrue();
+        assertThat(StatementClassifier.isQuery("SHOW TABLES")).isTrue();
+    }
+
+    @Test
+    void should_classify_common_table_expression_by_its_main_statement() {
+        assertThat(StatementClassifier.isQuery(
+                "WITH RECURSIVE t(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM t WHERE n < 3), "
+                        + "\"u\" AS (SELECT ')' FROM t) SELECT * FROM t")).isTrue();
+        assertThat(StatementClassifier.isQuery("WITH old AS (SELECT id FROM t) DELETE FROM t WHERE id IN "
+                + "(SELECT id FROM old)")).isFalse();
+    }
+
+    @Test
+    void should_not_recognise_commands_as_queries() {
+        assertThat(StatementClassifier.isQuery("INSERT INTO t SELECT * FROM u")).isFalse();
+        assertThat(StatementClassifier.isQuery("CALL p(1)")).isFalse();
+        assertThat(StatementClassifier.isQuery("SELECTION")).isFalse();
+        assertThat(StatementClassifier.isQuery("")).isFalse();
+    }
+
+    @Test
+    void should_recognise_keywords_whatever_the_default_locale() {
+        final Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertThat(StatementClassifier.isQuery("with t AS (SELECT 1) SELECT * FROM t")).isTrue();
+            assertThat(StatementClassifier.isQuery("describe t")).isTrue();
+            assertThat(StatementClassifier.isQuery("explain SELECT 1")).isTrue();
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+}
@@ -40,6 +40,7 @@ import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
 
+import org.bonitasoft.connectors.database.DataSourceCache;
 import org.bonitasoft.engine.connector.ConnectorException;
 import org.bonitasoft.engine.connector.ConnectorValidationException;
 import org.hsqldb.jdbc.JDBCDataSource;
@@ -376,7 +377,42 @@ class DatasourceConnectorTest {
         datasourceConnector.connect();
         final Map<String, Object> output = datasourceConnector.execute();
         datasourceConnector.disconnect();
-        assertThat(output).isNull();
+        assertThat(output).containsEntry(DatasourceConnector.EXECUTED_STATEMENTS_OUTPUT, 8)
+                .containsKey(DatasourceConnector.EXECUTION_TIME_OUTPUT);
+    }
+
+    @Test
+    void should_lookup_datasource_once() throws Exception {
+        DataSourceCache.clear();
+        final long misses = DataSourceCache.getMissCount();
+        final long hits = DataSourceCache.getHitCount();
+
+        executeAndGetResult(getDatasourceConnectorWithNoParameter());
+        executeAndGetResult(getDatasourceConnectorWithNoParameter());
+
+        assertThat(DataSourceCache.getMissCount()).isEqualTo(misses + 1);
+        assertThat(DataSourceCache.getHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void should_invalidate_cached_datasource_when_connection_fails() throws Exception {
+        final JDBCDataSource broken = new JDBCDataSource();
+        broken.setDatabase("jdbc:hsqldb:mem:missing;ifexists=true");
+        broken.setUser("sa");
+        ic.bind("java:/comp/env/jdbc/broken", broken);
+        final long misses = DataSourceCache.getMissCount();
+        try {
+            for (int i = 0; i < 2; i++) {
+                final DatasourceConnector datasourceConnector = getDatasourceConnectorWithParameters(
+                        Collections.singletonMap(DatasourceConnector.DATASOURCE_INPUT,
+                                (Object) "java:/comp/env/jdbc/broken"));
+                assertThrows(ConnectorException.class, datasourceConnector::connect);
+            }
+        } finally {
+            ic.unbind("java:/comp/env/jdbc/broken");
+        }
+
+        assertThat(DataSourceCache.getMissCount()).isEqualTo(misses + 2);
     }
 
     private void createTable() throws Exception {
@@ -34,6 +34,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import org.bonitasoft.connectors.database.CancellationRegistry;
+import org.bonitasoft.connectors.database.Database;
+import org.bonitasoft.connectors.database.ExecutionMetrics;
+import org.bonitasoft.connectors.database.InMemoryMetrics;
+import org.bonitasoft.connectors.database.QueryFingerprint;
+import org.bonitasoft.connectors.database.result.ColumnList;
+import org.bonitasoft.connectors.database.result.ColumnarTable;
+import org.bonitasoft.connectors.database.result.DoubleColumn;
+import org.bonitasoft.connectors.database.result.IntColumn;
 import org.bonitasoft.engine.connector.ConnectorException;
 import org.bonitasoft.engine.connector.ConnectorValidationException;
 import org.junit.jupiter.api.AfterEach;
@@ -294,6 +303,590 @@ class JdbcConnectorTest {
         genericBatchScriptTest("|");
     }
 
+    @Test
+    void should_execute_batch_script_in_chunks_with_intermediate_commits() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, getBatchScript(";"));
+        parameters.put(JdbcConnector.SEPARATOR, ";");
+        parameters.put(JdbcConnector.BATCH_SIZE, 3);
+        parameters.put(JdbcConnector.COMMIT_INTERVAL, 2);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat(result).containsEntry(JdbcConnector.EXECUTED_STATEMENTS_OUTPUT, 8)
+                .containsKey(JdbcConnector.EXECUTION_TIME_OUTPUT);
+        assertThat((List<?>) result.get(JdbcConnector.BATCH_UPDATE_COUNTS_OUTPUT)).hasSize(4);
+    }
+
+    @Test
+    void should_rollback_batch_since_last_commit_on_failure() throws Exception {
+        simpleQuery("CREATE TABLE batch_a (x INT)");
+        try {
+            final Database database = new Database(JDBC_DRIVER, JDBC_URL, USERNAME, PASSWORD);
+            try {
+                assertThrows(ConnectorException.class, () -> database.executeBatch(Arrays.asList(
+                        "INSERT INTO batch_a VALUES (1)", "INSERT INTO batch_a VALUES (2)",
+                        "INSERT INTO batch_a VALUES (3)", "INSERT INTO batch_unknown VALUES (4)"), 1, 2, false));
+                // nothing is left to commit
+                database.commit();
+            } finally {
+                database.disconnect();
+            }
+
+            assertThat(executeAndGetResult(getJdbcConnectorWithParameters(Collections.singletonMap(
+                    JdbcConnector.SCRIPT, (Object) "SELECT COUNT(*) FROM batch_a")))).containsExactly(
+                            Collections.singletonList(2L));
+        } finally {
+            simpleQuery("DROP TABLE batch_a");
+        }
+    }
+
+    @Test
+    void should_stream_table_result_with_fetch_size() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+        parameters.put(JdbcConnector.FETCH_SIZE, 1);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        @SuppressWarnings("unchecked")
+        final List<List<Object>> table = (List<List<Object>>) result.get(JdbcConnector.TABLE_RESULT_OUTPUT);
+        assertThat(table).hasSize(2);
+        assertThat(table.get(0)).containsExactly(1, "John", "Doe", 27, 15.4);
+        assertThat(table.get(1)).containsExactly(2, "Jane", "Doe", 31, 15.9);
+    }
+
+    @Test
+    void should_commit_work_of_streamed_query_only_once_read() throws Exception {
+        simpleQuery("CREATE TABLE fetch_audit (x INT)");
+        try {
+            for (final boolean read : new boolean[] { true, false }) {
+                final Database database = new Database(JDBC_DRIVER, JDBC_URL, USERNAME, PASSWORD);
+                try {
+                    database.setFetchSize(1);
+                    database.select("SELECT * FROM " + getTableName(), ResultSet.TYPE_FORWARD_ONLY, 0);
+                    // stands for the effects of the query itself, e.g. of a function it calls
+                    database.executeCommand("INSERT INTO fetch_audit VALUES (" + (read ? 1 : 2) + ")");
+                    if (read) {
+                        database.commitCursor();
+                    }
+                } finally {
+                    database.disconnect();
+                }
+            }
+
+            assertThat(executeAndGetResult(getJdbcConnectorWithParameters(Collections.singletonMap(
+                    JdbcConnector.SCRIPT, (Object) "SELECT x FROM fetch_audit")))).containsExactly(
+                            Collections.singletonList(1));
+        } finally {
+            simpleQuery("DROP TABLE fetch_audit");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_truncate_table_result_to_max_rows() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+        parameters.put(JdbcConnector.MAX_ROWS, 1);
+        parameters.put(JdbcConnector.TRUNCATE_RESULT, true);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat((List<List<Object>>) result.get(JdbcConnector.TABLE_RESULT_OUTPUT)).hasSize(1);
+        assertThat(result.get(JdbcConnector.TRUNCATED_OUTPUT)).isEqualTo(true);
+        assertThat((Long) result.get(JdbcConnector.RESULT_SIZE_OUTPUT)).isPositive();
+    }
+
+    @Test
+    void should_fail_when_result_exceeds_max_rows() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+        parameters.put(JdbcConnector.MAX_ROWS, 1);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        try {
+            assertThrows(ConnectorException.class, jdbcConnector::execute);
+        } finally {
+            jdbcConnector.disconnect();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_truncate_n_row_result_to_max_result_bytes() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, getFirstnameQuery());
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.N_ROW);
+        parameters.put(JdbcConnector.MAX_RESULT_BYTES, 60L);
+        parameters.put(JdbcConnector.TRUNCATE_RESULT, true);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat((List<Object>) result.get(JdbcConnector.NROW_ONECOL_RESULT_OUTPUT)).containsExactly("John");
+        assertThat(result.get(JdbcConnector.TRUNCATED_OUTPUT)).isEqualTo(true);
+        assertThat(result.get(JdbcConnector.RESULT_SIZE_OUTPUT)).isEqualTo(48L);
+    }
+
+    @Test
+    void should_get_columnar_table_result() throws Exception {
+        simpleQuery(insertBuilder("(firstname, age, lastname, average)", "('Jim', NULL, 'Doe', NULL)"));
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE_COLUMNAR);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        final ColumnarTable table = (ColumnarTable) result.get(JdbcConnector.TABLE_RESULT_OUTPUT);
+        assertThat(table).hasSize(3);
+        assertThat(table.get(0)).containsExactly(1, "John", "Doe", 27, 15.4);
+        assertThat(table.get(2)).containsExactly(3, "Jim", "Doe", null, null);
+        assertThat(table.getColumn(3)).isInstanceOf(IntColumn.class);
+        assertThat(((DoubleColumn) table.getColumn(4)).toDoubleArray()).containsExactly(15.4, 15.9, 0.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_get_n_row_result() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, getFirstnameQuery());
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.N_ROW);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat((List<Object>) result.get(JdbcConnector.NROW_ONECOL_RESULT_OUTPUT)).containsExactly("John", "Jane");
+    }
+
+    @Test
+    void should_get_compact_n_row_result_of_numeric_column() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, selectBuilder("age", "1=1", "id"));
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.N_ROW_COMPACT);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        final ColumnList ages = (ColumnList) result.get(JdbcConnector.NROW_ONECOL_RESULT_OUTPUT);
+        assertThat(ages).containsExactly(27L, 31L);
+        assertThat(ages.toLongArray()).containsExactly(27, 31);
+    }
+
+    @Test
+    void should_get_single_result_of_first_row() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, getFirstnameQuery());
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.SINGLE);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat(result.get(JdbcConnector.SINGLE_RESULT_OUTPUT)).isEqualTo("John");
+    }
+
+    @Test
+    void should_get_one_row_result() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, selectBuilder("firstname, age", "firstname='Jane'", "id"));
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.ONE_ROW);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat(result.get(JdbcConnector.ONEROW_NCOL_RESULT_OUTPUT)).isEqualTo(Arrays.asList("Jane", 31));
+    }
+
+    @Test
+    void should_fail_one_row_result_when_query_returns_several_rows() throws Exception {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
+                Collections.singletonMap(JdbcConnector.OUTPUT_TYPE, (Object) JdbcConnector.ONE_ROW));
+        jdbcConnector.connect();
+        try {
+            assertThrows(ConnectorException.class, jdbcConnector::execute);
+        } finally {
+            jdbcConnector.disconnect();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_run_common_table_expression_as_query() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, "-- adults only\nWITH adults AS (SELECT firstname, id FROM "
+                + getTableName() + " WHERE age > 18) SELECT firstname FROM adults ORDER BY id");
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.N_ROW);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat((List<Object>) result.get(JdbcConnector.NROW_ONECOL_RESULT_OUTPUT)).containsExactly("John", "Jane");
+    }
+
+    @Test
+    void should_get_result_of_statement_producing_a_result_set() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, "CALL ABS(-2)");
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.SINGLE);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat(result.get(JdbcConnector.SINGLE_RESULT_OUTPUT)).isEqualTo(2);
+    }
+
+    @Test
+    void should_bind_positional_parameters() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, selectBuilder("firstname", "age > ? AND lastname = ?", "id"));
+        parameters.put(JdbcConnector.PARAMETERS, Arrays.asList(30, "Doe"));
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.SINGLE);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat(result.get(JdbcConnector.SINGLE_RESULT_OUTPUT)).isEqualTo("Jane");
+    }
+
+    @Test
+    void should_bind_named_parameters() throws Exception {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        values.put("firstname", "Arthur");
+        values.put("age", 25);
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, insertBuilder("(firstname, age, lastname, average)",
+                "(:firstname, :age, 'Doe', 17)"));
+        parameters.put(JdbcConnector.PARAMETERS, values);
+        simpleQuery(parameters);
+
+        final List<List<Object>> result = executeAndGetResult(getJdbcConnectorWithParameters(
+                Collections.singletonMap(JdbcConnector.SCRIPT, (Object) selectBuilder("*", "firstname='Arthur'",
+                        "id"))));
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0)).contains("Arthur", 25);
+    }
+
+    @Test
+    void testValidateInputParametersWithInvalidParameters() {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
+                Collections.singletonMap(JdbcConnector.PARAMETERS, (Object) "John"));
+        final ConnectorValidationException exception = assertThrows(ConnectorValidationException.class,
+                jdbcConnector::validateInputParameters);
+        assertThat(exception.getMessage()).contains("Parameters");
+    }
+
+    @Test
+    void should_insert_rows_in_batches() throws Exception {
+        final List<List<Object>> rows = new ArrayList<List<Object>>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(Arrays.asList((Object) ("Bulk" + i), 20 + i));
+        }
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT,
+                insertBuilder("(firstname, age, lastname, average)", "(?, ?, 'Doe', 10)"));
+        parameters.put(JdbcConnector.BATCH_PARAMETERS, rows);
+        parameters.put(JdbcConnector.BATCH_SIZE, 2);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+
+        assertThat(result.get(JdbcConnector.BATCH_UPDATE_COUNTS_OUTPUT)).isEqualTo(Arrays.asList(2, 2, 1));
+        final String select = selectBuilder("firstname, age", "firstname LIKE 'Bulk%'", "id");
+        final List<List<Object>> inserted = executeAndGetResult(
+                getJdbcConnectorWithParameters(Collections.singletonMap(JdbcConnector.SCRIPT, (Object) select)));
+        assertThat(inserted).hasSize(5);
+        assertThat(inserted.get(4)).containsExactly("Bulk4", 24);
+    }
+
+    @Test
+    void testValidateInputParametersWithInvalidBatchParameters() {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
+                Collections.singletonMap(JdbcConnector.BATCH_PARAMETERS, (Object) Arrays.asList("John", "Jane")));
+        final ConnectorValidationException exception = assertThrows(ConnectorValidationException.class,
+                jdbcConnector::validateInputParameters);
+        assertThat(exception.getMessage()).contains("Batch parameters");
+    }
+
+    @Test
+    void testValidateInputParametersWithNegativeFetchSize() {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
+                Collections.singletonMap(JdbcConnector.FETCH_SIZE, (Object) (-1)));
+        final ConnectorValidationException exception = assertThrows(ConnectorValidationException.class,
+                jdbcConnector::validateInputParameters);
+        assertThat(exception.getMessage()).contains("Fetch size");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_read_table_page_by_page() throws Exception {
+        simpleQuery(insertBuilder("(firstname, age, lastname, average)", "('Jim', 40, 'Doe', 12.0)"));
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, "SELECT id, firstname FROM " + getTableName());
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+        parameters.put(JdbcConnector.KEY_COLUMNS, Collections.singletonList("id"));
+        parameters.put(JdbcConnector.PAGE_SIZE, 2);
+
+        JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.validateInputParameters();
+        jdbcConnector.connect();
+        Map<String, Object> result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+        assertThat((List<List<Object>>) result.get(JdbcConnector.TABLE_RESULT_OUTPUT))
+                .containsExactly(Arrays.asList(1, "John"), Arrays.asList(2, "Jane"));
+        final String token = (String) result.get(JdbcConnector.NEXT_CONTINUATION_TOKEN_OUTPUT);
+        assertThat(token).isNotNull();
+
+        parameters.put(JdbcConnector.CONTINUATION_TOKEN, token);
+        jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        result = jdbcConnector.execute();
+        jdbcConnector.disconnect();
+        assertThat((List<List<Object>>) result.get(JdbcConnector.TABLE_RESULT_OUTPUT))
+                .containsExactly(Arrays.asList(3, "Jim"));
+        assertThat(result.get(JdbcConnector.NEXT_CONTINUATION_TOKEN_OUTPUT)).isNull();
+    }
+
+    @Test
+    void should_reject_continuation_token_of_another_query() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, "SELECT id, firstname FROM " + getTableName());
+        parameters.put(JdbcConnector.KEY_COLUMNS, Collections.singletonList("id"));
+        parameters.put(JdbcConnector.PAGE_SIZE, 1);
+        JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.connect();
+        final Object token = jdbcConnector.execute().get(JdbcConnector.NEXT_CONTINUATION_TOKEN_OUTPUT);
+        jdbcConnector.disconnect();
+
+        parameters.put(JdbcConnector.SCRIPT, "SELECT id FROM " + getTableName());
+        parameters.put(JdbcConnector.CONTINUATION_TOKEN, token);
+        final JdbcConnector otherConnector = getJdbcConnectorWithParameters(parameters);
+        otherConnector.connect();
+        assertThrows(ConnectorException.class, otherConnector::execute);
+        otherConnector.disconnect();
+    }
+
+    @Test
+    void testValidateInputParametersWithInvalidKeyColumn() {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.KEY_COLUMNS, Collections.singletonList("id; DROP TABLE x"));
+        parameters.put(JdbcConnector.PAGE_SIZE, 10);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+
+        assertThrows(ConnectorValidationException.class, jdbcConnector::validateInputParameters);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_execute_groups_in_parallel_and_commit_them() throws Exception {
+        simpleQuery("CREATE TABLE parallel_a (x INT)");
+        simpleQuery("CREATE TABLE parallel_b (x INT)");
+        try {
+            final Map<String, Object> result = executeParallelScript("--@group a\n"
+                    + "INSERT INTO parallel_a VALUES (1);INSERT INTO parallel_a VALUES (2);\n"
+                    + "--@group b\nINSERT INTO parallel_b VALUES (3);");
+
+            assertThat(result).containsEntry(JdbcConnector.EXECUTED_STATEMENTS_OUTPUT, 3);
+            assertThat((List<Long>) result.get(JdbcConnector.GROUP_TIMINGS_OUTPUT)).hasSize(2);
+            assertThat(executeAndGetResult(getJdbcConnectorWithParameters(Collections.singletonMap(
+                    JdbcConnector.SCRIPT, (Object) "SELECT COUNT(*) FROM parallel_a")))).containsExactly(
+                            Collections.singletonList(2L));
+        } finally {
+            simpleQuery("DROP TABLE parallel_a");
+            simpleQuery("DROP TABLE parallel_b");
+        }
+    }
+
+    @Test
+    void should_rollback_all_groups_when_one_fails() throws Exception {
+        simpleQuery("CREATE TABLE parallel_a (x INT)");
+        try {
+            assertThrows(ConnectorException.class, () -> executeParallelScript(
+                    "INSERT INTO parallel_a VALUES (1);--@group\nINSERT INTO parallel_unknown VALUES (2);"));
+
+            assertThat(executeAndGetResult(getJdbcConnectorWithParameters(Collections.singletonMap(
+                    JdbcConnector.SCRIPT, (Object) "SELECT COUNT(*) FROM parallel_a")))).containsExactly(
+                            Collections.singletonList(0L));
+        } finally {
+            simpleQuery("DROP TABLE parallel_a");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_merge_partitions_in_range_order() throws Exception {
+        simpleQuery(insertBuilder("(firstname, age, lastname, average)", "('Jim', 40, 'Doe', 12.0)"));
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, "SELECT id, firstname FROM " + getTableName());
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+        parameters.put(JdbcConnector.PARTITION_COLUMN, "id");
+        parameters.put(JdbcConnector.ORDERED_MERGE, true);
+        parameters.put(JdbcConnector.PARALLELISM, 2);
+
+        final Map<String, Object> result = executeAndValidate(parameters);
+
+        assertThat((List<List<Object>>) result.get(JdbcConnector.TABLE_RESULT_OUTPUT)).containsExactly(
+                Arrays.asList(1, "John"), Arrays.asList(2, "Jane"), Arrays.asList(3, "Jim"));
+        assertThat(result).containsEntry(JdbcConnector.TRUNCATED_OUTPUT, false);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_merge_null_partition_first() throws Exception {
+        simpleQuery(insertBuilder("(firstname, age, lastname, average)", "('Jim', NULL, 'Doe', 12.0)"));
+        simpleQuery("SET DATABASE SQL NULLS FIRST FALSE");
+        try {
+            final Map<String, Object> parameters = new HashMap<String, Object>();
+            parameters.put(JdbcConnector.SCRIPT, "SELECT firstname, age FROM " + getTableName());
+            parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+            parameters.put(JdbcConnector.PARTITION_COLUMN, "age");
+            parameters.put(JdbcConnector.ORDERED_MERGE, true);
+            parameters.put(JdbcConnector.PARALLELISM, 2);
+
+            final Map<String, Object> result = executeAndValidate(parameters);
+
+            assertThat((List<List<Object>>) result.get(JdbcConnector.TABLE_RESULT_OUTPUT)).containsExactly(
+                    Arrays.asList("Jim", null), Arrays.asList("John", 27), Arrays.asList("Jane", 31));
+        } finally {
+            simpleQuery("SET DATABASE SQL NULLS FIRST TRUE");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_truncate_unordered_merge_of_partitions() throws Exception {
+        simpleQuery(insertBuilder("(firstname, age, lastname, average)", "('Jim', 40, 'Doe', 12.0)"));
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, "SELECT id FROM " + getTableName() + " WHERE age > ?");
+        parameters.put(JdbcConnector.PARAMETERS, Collections.singletonList(0));
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.N_ROW);
+        parameters.put(JdbcConnector.PARTITION_COLUMN, "id");
+        parameters.put(JdbcConnector.PARALLELISM, 3);
+        parameters.put(JdbcConnector.MAX_ROWS, 2);
+        parameters.put(JdbcConnector.TRUNCATE_RESULT, true);
+
+        final Map<String, Object> result = executeAndValidate(parameters);
+
+        assertThat((List<Object>) result.get(JdbcConnector.NROW_ONECOL_RESULT_OUTPUT)).hasSize(2)
+                .isSubsetOf(1, 2, 3);
+        assertThat(result).containsEntry(JdbcConnector.TRUNCATED_OUTPUT, true);
+    }
+
+    @Test
+    void testValidateInputParametersWithPartitionedOneRowOutput() {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.PARTITION_COLUMN, "id");
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.ONE_ROW);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+
+        final ConnectorValidationException exception = assertThrows(ConnectorValidationException.class,
+                jdbcConnector::validateInputParameters);
+        assertThat(exception.getMessage()).contains("table or n_row");
+    }
+
+    @Test
+    void testValidateInputParametersWithPartitionedOrPaginatedBatchWithEmptySeparator() {
+        final Map<String, Object> partitioned = new HashMap<String, Object>();
+        partitioned.put(JdbcConnector.PARTITION_COLUMN, "id");
+        partitioned.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+        partitioned.put(JdbcConnector.SEPARATOR, "");
+        final Map<String, Object> paginated = new HashMap<String, Object>();
+        paginated.put(JdbcConnector.KEY_COLUMNS, Collections.singletonList("id"));
+        paginated.put(JdbcConnector.PAGE_SIZE, 10);
+        paginated.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+        paginated.put(JdbcConnector.SEPARATOR, "");
+
+        assertThat(assertThrows(ConnectorValidationException.class,
+                getJdbcConnectorWithParameters(partitioned)::validateInputParameters).getMessage())
+                        .contains("Partitioned query only applies to a single query");
+        assertThat(assertThrows(ConnectorValidationException.class,
+                getJdbcConnectorWithParameters(paginated)::validateInputParameters).getMessage())
+                        .contains("Pagination only applies to a single query");
+    }
+
+    @Test
+    void testValidateInputParametersWithNegativeQueryTimeout() {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
+                Collections.singletonMap(JdbcConnector.QUERY_TIMEOUT, (Object) (-1)));
+
+        final ConnectorValidationException exception = assertThrows(ConnectorValidationException.class,
+                jdbcConnector::validateInputParameters);
+        assertThat(exception.getMessage()).contains("Query timeout");
+    }
+
+    @Test
+    void should_unregister_execution_on_disconnect() throws Exception {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
+                Collections.singletonMap(JdbcConnector.QUERY_TIMEOUT, (Object) 10));
+        final List<CancellationRegistry.Execution> before = new ArrayList<>(CancellationRegistry.getExecutions());
+        jdbcConnector.connect();
+        jdbcConnector.execute();
+        final List<CancellationRegistry.Execution> during = new ArrayList<>(CancellationRegistry.getExecutions());
+        during.removeAll(before);
+        assertThat(during).hasSize(1);
+
+        jdbcConnector.disconnect();
+
+        assertThat(CancellationRegistry.getExecutions()).doesNotContain(during.get(0));
+    }
+
+    @Test
+    void should_record_metrics_tagged_with_definition_id() throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.CONNECTOR_DEFINITION_ID, "database-metrics-test");
+        parameters.put(JdbcConnector.OUTPUT_TYPE, JdbcConnector.TABLE);
+
+        executeAndValidate(parameters);
+
+        final InMemoryMetrics metrics = (InMemoryMetrics) ExecutionMetrics.getMetrics();
+        final String tags = "{definition=database-metrics-test,query=" + QueryFingerprint.of(getSelectAllQuery())
+                + "}";
+        assertThat(metrics.getStatistics()).containsKeys("connect" + tags, "execute" + tags, "fetch" + tags,
+                "map" + tags, "disconnect" + tags);
+        assertThat(metrics.getStatistics().get("rows_fetched" + tags).getTotal()).isEqualTo(2);
+    }
+
+    private Map<String, Object> executeAndValidate(final Map<String, Object> parameters) throws Exception {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.validateInputParameters();
+        jdbcConnector.connect();
+        try {
+            return jdbcConnector.execute();
+        } finally {
+            jdbcConnector.disconnect();
+        }
+    }
+
+    private Map<String, Object> executeParallelScript(final String script) throws Exception {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(JdbcConnector.SCRIPT, script);
+        parameters.put(JdbcConnector.SEPARATOR, ";");
+        parameters.put(JdbcConnector.PARALLELISM, 2);
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
+        jdbcConnector.validateInputParameters();
+        jdbcConnector.connect();
+        try {
+            return jdbcConnector.execute();
+        } finally {
+            jdbcConnector.disconnect();
+        }
+    }
+
     private void createTable() throws Exception {
         final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
                 Collections.singletonMap(JdbcConnector.SCRIPT, (Object) getCreateTable()));
@@ -303,8 +896,11 @@ class JdbcConnectorTest {
     }
 
     private void simpleQuery(final Object query) throws ConnectorException {
-        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(
-                Collections.singletonMap(JdbcConnector.SCRIPT, query));
+        simpleQuery(Collections.singletonMap(JdbcConnector.SCRIPT, query));
+    }
+
+    private void simpleQuery(final Map<String, Object> parameters) throws ConnectorException {
+        final JdbcConnector jdbcConnector = getJdbcConnectorWithParameters(parameters);
         jdbcConnector.connect();
         jdbcConnector.execute();
         jdbcConnector.disconnect();
@@ -467,6 +1063,10 @@ class JdbcConnectorTest {
         return selectBuilder("*", "id=3", "id");
     }
 
+    private String getFirstnameQuery() {
+        return selectBuilder("firstname", "1=1", "id");
+    }
+
     private String getFirstnameLastnameQuery() {
         return selectBuilder("firstname, lastname", "1=1", "id");
     }
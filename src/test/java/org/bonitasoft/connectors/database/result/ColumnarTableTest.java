@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ColumnarTableTest {
+
+    @Test
+    void should_give_row_view_over_columns() {
+        final ColumnarTable table = table();
+
+        assertThat(table).hasSize(3);
+        assertThat(table.get(1)).containsExactly(null, "b");
+        assertThat(table.getColumn(0).isNull(1)).isTrue();
+        assertThat(((LongColumn) table.getColumn(0)).toLongArray()).containsExactly(1L, 0L, 3L);
+        assertThat(table).isEqualTo(Arrays.asList(Arrays.asList(1L, "a"), Arrays.asList(null, "b"),
+                Arrays.asList(3L, null)));
+    }
+
+    @Test
+    void should_serialize_as_plain_lists() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table());
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Object read = in.readObject();
+
+            assertThat(read).isInstanceOf(ArrayList.class).isEqualTo(table());
+            assertThat(((List<?>) read).get(0)).isInstanceOf(ArrayList.class);
+        }
+    }
+
+    private static ColumnarTable table() {
+        final LongColumn ids = new LongColumn();
+        ids.add(1L, false);
+        ids.add(0L, true);
+        ids.add(3L, false);
+        final ObjectColumn names = new ObjectColumn();
+        names.add("a");
+        names.add("b");
+        names.add(null);
+        return new ColumnarTable(new Column[] { ids, names });
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+
+class DetachedResultSetTest {
+
+    private static final String QUERY = "SELECT * FROM (VALUES (1, 'a', DATE '2024-01-02'), (2, 'b', NULL),"
+            + " (3, NULL, NULL)) AS T(ID, NAME, DAY) ORDER BY ID";
+
+    @Test
+    void should_scroll_over_detached_rows() throws Exception {
+        final DetachedResultSet rows = detach(ResultBudget.unlimited());
+
+        assertThat(rows.isBeforeFirst()).isTrue();
+        assertThat(rows.next()).isTrue();
+        assertThat(rows.isFirst()).isTrue();
+        assertThat(rows.absolute(-1)).isTrue();
+        assertThat(rows.getRow()).isEqualTo(3);
+        assertThat(rows.isLast()).isTrue();
+        assertThat(rows.relative(-2)).isTrue();
+        assertThat(rows.getInt("id")).isEqualTo(1);
+        assertThat(rows.previous()).isFalse();
+        assertThat(rows.getRow()).isZero();
+        rows.afterLast();
+        assertThat(rows.isAfterLast()).isTrue();
+        assertThat(rows.next()).isFalse();
+        assertThat(rows.getType()).isEqualTo(ResultSet.TYPE_SCROLL_INSENSITIVE);
+    }
+
+    @Test
+    void should_convert_values() throws Exception {
+        final DetachedResultSet rows = detach(ResultBudget.unlimited());
+        rows.first();
+
+        assertThat(rows.getString(1)).isEqualTo("1");
+        assertThat(rows.getLong("ID")).isEqualTo(1L);
+        assertThat(rows.getBigDecimal(1)).isEqualByComparingTo("1");
+        assertThat(rows.getObject("name", String.class)).isEqualTo("a");
+        assertThat(rows.getDate("day")).isEqualTo(Date.valueOf("2024-01-02"));
+        assertThat(rows.getMetaData().getColumnLabel(3)).isEqualTo("DAY");
+        rows.last();
+        assertThat(rows.getString("name")).isNull();
+        assertThat(rows.wasNull()).isTrue();
+        assertThat(rows.getInt(3)).isZero();
+        assertThrows(SQLException.class, () -> rows.getString("unknown"));
+        assertThrows(SQLFeatureNotSupportedException.class, () -> rows.updateInt(1, 4));
+    }
+
+    @Test
+    void should_stop_at_budget() throws Exception {
+        final ResultBudget budget = new ResultBudget(2, 0, true);
+        final DetachedResultSet rows = detach(budget);
+
+        assertThat(rows.getRowCount()).isEqualTo(2);
+        assertThat(budget.isTruncated()).isTrue();
+    }
+
+    @Test
+    void should_serialize_with_position() throws Exception {
+        final DetachedResultSet rows = detach(ResultBudget.unlimited());
+        rows.absolute(2);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(rows);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final ResultSet read = (ResultSet) in.readObject();
+
+            assertThat(read.getRow()).isEqualTo(2);
+            assertThat(read.getString("NAME")).isEqualTo("b");
+            assertThat(read.next()).isTrue();
+            assertThat(read.getInt(1)).isEqualTo(3);
+        }
+    }
+
+    private static DetachedResultSet detach(final ResultBudget budget) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:detached", "sa", "");
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(QUERY)) {
+            return DetachedResultSet.fill(resultSet, RowMapper.of(resultSet.getMetaData()), budget);
+        }
+    }
+
+}
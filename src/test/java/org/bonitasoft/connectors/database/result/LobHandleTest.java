@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LobHandleTest {
+
+    private static final String TEXT = "Document é ";
+
+    @TempDir
+    Path directory;
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        System.setProperty(SpilledTable.DIRECTORY_PROPERTY, directory.toString());
+        System.setProperty(LobHandle.INLINE_LIMIT_PROPERTY, "64");
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:lobs", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE documents (id INT, content CLOB, data BLOB)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO documents VALUES (?, ?, ?)")) {
+            insert(insert, 1, "small", new byte[] { 1, 2, 3 });
+            insert(insert, 2, repeat(TEXT, 100), new byte[1000]);
+            insert(insert, 3, null, null);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE documents");
+        }
+        connection.close();
+        System.clearProperty(SpilledTable.DIRECTORY_PROPERTY);
+        System.clearProperty(LobHandle.INLINE_LIMIT_PROPERTY);
+    }
+
+    @Test
+    void should_keep_small_content_inline_and_spill_big_content() throws Exception {
+        final List<List<Object>> rows = query();
+
+        final LobHandle small = (LobHandle) rows.get(0).get(1);
+        assertThat(small.isInline()).isTrue();
+        assertThat(small.getString()).isEqualTo("small");
+        assertThat(((LobHandle) rows.get(0).get(2)).getBytes()).containsExactly(1, 2, 3);
+        final LobHandle big = (LobHandle) rows.get(1).get(1);
+        assertThat(big.isInline()).isFalse();
+        assertThat(big.length()).isEqualTo(TEXT.length() * 100L);
+        assertThat(big.getSize()).isEqualTo(Files.size(big.getFile()));
+        assertThat(big.getString()).isEqualTo(repeat(TEXT, 100));
+        assertThat(((LobHandle) rows.get(1).get(2)).getSize()).isEqualTo(1000);
+        assertThat(rows.get(2)).containsExactly(3, null, null);
+
+        big.delete();
+        assertThat(big.getFile()).doesNotExist();
+    }
+
+    @Test
+    void should_copy_content_when_serialized() throws Exception {
+        final LobHandle big = (LobHandle) query().get(1).get(1);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(big);
+        }
+        big.delete();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final LobHandle read = (LobHandle) in.readObject();
+
+            assertThat(read.isCharacter()).isTrue();
+            assertThat(read.getFile()).isNotEqualTo(big.getFile()).exists();
+            assertThat(read.getString()).isEqualTo(repeat(TEXT, 100));
+        }
+    }
+
+    @Test
+    void should_keep_lob_files_of_spilled_table() throws Exception {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM documents ORDER BY id");
+                SpilledTable table = SpilledTable.write(resultSet, RowMapper.of(resultSet.getMetaData()),
+                        ResultBudget.unlimited())) {
+            System.gc();
+
+            assertThat(((LobHandle) table.get(1).get(1)).getString()).isEqualTo(repeat(TEXT, 100));
+            assertThat(((LobHandle) table.get(0).get(2)).getBytes()).containsExactly(1, 2, 3);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void should_keep_lob_file_of_spilled_table_while_decoded_handle_is_reachable() throws Exception {
+        final LobHandle big = readFromSpilledTable(1, 1);
+
+        for (int i = 0; i < 10 && Files.exists(big.getFile()); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertThat(big.getString()).isEqualTo(repeat(TEXT, 100));
+    }
+
+    /**
+     * @return a handle decoded from a spilled table, which is not reachable anymore from the caller
+     */
+    private LobHandle readFromSpilledTable(final int row, final int column) throws Exception {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM documents ORDER BY id")) {
+            return (LobHandle) SpilledTable.write(resultSet, RowMapper.of(resultSet.getMetaData()),
+                    ResultBudget.unlimited()).get(row).get(column);
+        }
+    }
+
+    private List<List<Object>> query() throws Exception {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM documents ORDER BY id")) {
+            final RowMapper rowMapper = RowMapper.of(resultSet.getMetaData());
+            final List<List<Object>> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                rows.add(rowMapper.mapRow(resultSet));
+            }
+            return rows;
+        }
+    }
+
+    private static void insert(final PreparedStatement insert, final int id, final String content,
+            final byte[] data) throws Exception {
+        insert.setInt(1, id);
+        insert.setString(2, content);
+        insert.setBytes(3, data);
+        insert.executeUpdate();
+    }
+
+    private static String repeat(final String text, final int count) {
+        return String.join("", Collections.nCopies(count, text));
+    }
+
+}
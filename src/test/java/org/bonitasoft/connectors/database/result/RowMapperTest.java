@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import org.junit.jupiter.api.Test;
+
+class RowMapperTest {
+
+    private static final String QUERY = "SELECT CAST(1 AS INT), CAST(NULL AS BIGINT), 'a', "
+            + "CAST('2020-01-02 03:04:05' AS TIMESTAMP) FROM (VALUES (0))";
+
+    @Test
+    void should_map_row_with_typed_getters() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:rowmapper", "sa", "");
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(QUERY)) {
+            final RowMapper mapper = RowMapper.of(resultSet.getMetaData());
+            resultSet.next();
+
+            assertThat(mapper.mapRow(resultSet)).containsExactly(1, null, "a",
+                    Timestamp.valueOf("2020-01-02 03:04:05"));
+        }
+    }
+
+    @Test
+    void should_read_vendor_timestamps_as_timestamps() {
+        assertThat(RowMapper.extractor(Types.TIMESTAMP, "oracle.sql.TIMESTAMP"))
+                .isSameAs(RowMapper.extractor(Types.DATE, Timestamp.class.getName()));
+        assertThat(RowMapper.extractor(Types.TIMESTAMP, "java.time.LocalDateTime"))
+                .isSameAs(RowMapper.extractor(Types.OTHER, null));
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2009 - 2020 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.bonitasoft.connectors.database.result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpilledTableTest {
+
+    private static final String QUERY = "SELECT X, 'row ' || X, CAST(X AS DECIMAL(10, 2)) / 4, "
+            + "CASE WHEN MOD(X, 2) = 0 THEN NULL ELSE TIMESTAMP '2020-01-02 03:04:05.123456' END "
+            + "FROM UNNEST(SEQUENCE_ARRAY(1, 1000, 1)) AS T(X) ORDER BY X";
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty(SpilledTable.DIRECTORY_PROPERTY, directory.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(SpilledTable.DIRECTORY_PROPERTY);
+    }
+
+    @Test
+    void should_decode_rows_on_access_across_segments() throws Exception {
+        try (SpilledTable table = spill(ResultBudget.unlimited(), 4096)) {
+            assertThat(table).hasSize(1000);
+            assertThat(table.getSegmentCount()).isGreaterThan(1);
+            assertThat(table.get(999)).containsExactly(1000, "row 1000", new BigDecimal("250.00"), null);
+            assertThat(table.get(0)).containsExactly(1, "row 1", new BigDecimal("0.25"),
+                    Timestamp.valueOf("2020-01-02 03:04:05.123456"));
+        }
+    }
+
+    @Test
+    void should_delete_files_on_close() throws Exception {
+        final SpilledTable table = spill(new ResultBudget(10, 0, true), 4096);
+
+        assertThat(table).hasSize(10);
+        assertThat(directory.toFile().listFiles()).hasSize(2);
+        table.close();
+        assertThat(directory.toFile().listFiles()).isEmpty();
+    }
+
+    @Test
+    void should_unmap_files_on_close() throws Exception {
+        final Path maps = Paths.get("/proc/self/maps");
+        assumeTrue(Files.isReadable(maps), "mappings are only listed on Linux");
+        final SpilledTable table = spill(ResultBudget.unlimited(), 4096);
+        table.get(999);
+        assertThat(new String(Files.readAllBytes(maps))).contains(directory.toString());
+
+        table.close();
+
+        assertThat(new String(Files.readAllBytes(maps))).doesNotContain(directory.toString());
+        assertThrows(IllegalStateException.class, () -> table.get(0));
+    }
+
+    @Test
+    void should_round_trip_values_through_codec() {
+        final List<Object> row = Arrays.asList(1, 2L, 3.0, 4f, true, "é", new BigDecimal("-1.50"),
+                new byte[] { 1, 2 }, new java.sql.Date(0), new File("f"), null);
+
+        final List<Object> decoded = RowCodec.decode(RowCodec.encode(row));
+
+        assertThat(decoded).containsExactly(row.toArray());
+    }
+
+    private static SpilledTable spill(final ResultBudget budget, final long segmentSize) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:spill", "sa", "");
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(QUERY)) {
+            return SpilledTable.write(resultSet, RowMapper.of(resultSet.getMetaData()), budget, segmentSize);
+        }
+    }
+
+}